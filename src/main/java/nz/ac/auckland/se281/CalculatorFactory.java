@@ -0,0 +1,17 @@
+package nz.ac.auckland.se281;
+
+import java.io.FileNotFoundException;
+
+/** Opens the graph calculator for a test case when the user asks for a file. */
+@FunctionalInterface
+public interface CalculatorFactory {
+
+  /**
+   * Opens a graph calculator for the given test case.
+   *
+   * @param filename The name of the test case to open.
+   * @return The calculator for the test case.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  GraphCalculator open(String filename) throws FileNotFoundException;
+}
@@ -8,16 +8,34 @@ package nz.ac.auckland.se281;
 public enum Command {
   OPEN_FILE(1, "Open the file <FILENAME>"),
   INFO(0, "Print information about the current loaded file"),
+  WATCH(
+      0,
+      "Reload the current loaded file whenever it changes, and print the edges that changed and"
+          + " its properties"),
+  BUILD_CSR(
+      2,
+      "Build the plain DOT file <FILENAME> of `testcases` into a file of sorted rows <OUTPUT>,"
+          + " which opens without being parsed"),
 
   LIST_VERTICIES_EDGES(0, "List the set of vertices and edges"),
   LIST_ROOT_VERTICIES(0, "List the set of root vertices"),
+  LIST_REACHABLE_VERTICIES(
+      0, "List the set of vertices reachable from the roots, searching from them in parallel"),
 
-  CHECK_REFLEXIVITY(0, "Check reflexivity of the graph"),
-  CHECK_SYMMETRY(0, "Check symmetry of the graph"),
-  CHECK_TRANSITIVITY(0, "Check transitivity of the graph"),
-  CHECK_ANTISYMMETRY(0, "Check anti-symmetry of the graph"),
-  CHECK_EQUIVALENCE(0, "Check equivalence of the graph"),
+  CHECK_REFLEXIVITY(
+      0, 1, "Check reflexivity of the graph, showing up to <LIMIT> counterexamples (default 1)"),
+  CHECK_SYMMETRY(
+      0, 1, "Check symmetry of the graph, showing up to <LIMIT> counterexamples (default 1)"),
+  CHECK_TRANSITIVITY(
+      0, 1, "Check transitivity of the graph, showing up to <LIMIT> counterexamples (default 1)"),
+  CHECK_ANTISYMMETRY(
+      0,
+      1,
+      "Check anti-symmetry of the graph, showing up to <LIMIT> counterexamples (default 1)"),
+  CHECK_EQUIVALENCE(
+      0, 1, "Check equivalence of the graph, showing up to <LIMIT> counterexamples (default 1)"),
   COMPUTE_EQUIVALENCE(1, "Compute equivalence class for a vertex in loaded file <VERTEX>"),
+  ANALYZE(0, "Check every property, and list the roots and degree statistics, in one pass"),
 
   GRAPH_SEARCH_IBFS(
       0, "Perform a breadth-first search on the current loaded file, and display the BFS order"),
@@ -33,6 +51,17 @@ public enum Command {
       "Perform a recursive depth-first search on the current loaded file, and display the DFS"
           + " order"),
 
+  OPEN_WORKSPACE(
+      1,
+      "Open every graph file in the folder <DIRECTORY> of `testcases`, loading them in"
+          + " parallel"),
+  RUN_ALL(1, "Run <COMMAND> on every graph in the open workspace, printing results as they finish"),
+
+  STATS(
+      0,
+      "Print the shape of the loaded graph, then call counts, latencies and allocation of graph"
+          + " operations"),
+
   HELP(0, "Print usage"),
   EXIT(0, "Exit the application");
 
@@ -40,6 +69,8 @@ public enum Command {
 
   private final int numArgs;
 
+  private final int numOptionalArgs;
+
   private final String message;
 
   /**
@@ -49,7 +80,19 @@ public enum Command {
    * @param message The help message for the command.
    */
   private Command(final int numArgs, final String message) {
+    this(numArgs, 0, message);
+  }
+
+  /**
+   * Create a new command that can also be given optional arguments after its required ones.
+   *
+   * @param numArgs The number of arguments the command requires.
+   * @param numOptionalArgs The number of further arguments the command may be given.
+   * @param message The help message for the command.
+   */
+  private Command(final int numArgs, final int numOptionalArgs, final String message) {
     this.numArgs = numArgs;
+    this.numOptionalArgs = numOptionalArgs;
     this.message = message;
   }
 
@@ -62,6 +105,15 @@ public enum Command {
     return numArgs;
   }
 
+  /**
+   * Get the number of optional arguments the user may give after the required ones.
+   *
+   * @return The number of optional arguments.
+   */
+  public int getNumOptionalArgs() {
+    return numOptionalArgs;
+  }
+
   /**
    * Get the help message and required arguments for the command.
    *
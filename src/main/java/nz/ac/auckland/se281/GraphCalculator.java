@@ -1,17 +1,24 @@
 package nz.ac.auckland.se281;
 
-import com.paypal.digraph.parser.GraphEdge;
-import com.paypal.digraph.parser.GraphNode;
-import com.paypal.digraph.parser.GraphParser;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.Set;
-import nz.ac.auckland.se281.datastructures.Edge;
 import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphAnalysis;
+import nz.ac.auckland.se281.datastructures.GraphChanges;
+import nz.ac.auckland.se281.datastructures.GraphStatistics;
+import nz.ac.auckland.se281.datastructures.RelationProperties;
+import nz.ac.auckland.se281.io.GraphLoader;
+import nz.ac.auckland.se281.io.ListingWriter;
 
 /**
  * The calculator that reports properties of graphs to the user.
@@ -19,101 +26,563 @@ import nz.ac.auckland.se281.datastructures.Graph;
  * <p>You should not modify this class.
  */
 public class GraphCalculator {
-  private static final Path TESTCASES = Path.of("testcases");
+  static final Path TESTCASES = Path.of("testcases");
+
+  // the commands that only need a graph to be open, and no arguments:
+  private static final Set<Command> GRAPH_COMMANDS =
+      EnumSet.of(
+          Command.INFO,
+          Command.LIST_VERTICIES_EDGES,
+          Command.LIST_ROOT_VERTICIES,
+          Command.LIST_REACHABLE_VERTICIES,
+          Command.CHECK_REFLEXIVITY,
+          Command.CHECK_SYMMETRY,
+          Command.CHECK_TRANSITIVITY,
+          Command.CHECK_ANTISYMMETRY,
+          Command.CHECK_EQUIVALENCE,
+          Command.ANALYZE,
+          Command.GRAPH_SEARCH_IBFS,
+          Command.GRAPH_SEARCH_IDFS,
+          Command.GRAPH_SEARCH_RBFS,
+          Command.GRAPH_SEARCH_RDFS);
+
+  // the commands whose output is cached on disk with -Dgraph.cache, as they are the ones that are
+  // run again and again on the same graph:
+  private static final Set<Command> CACHED_COMMANDS =
+      EnumSet.of(
+          Command.CHECK_REFLEXIVITY,
+          Command.CHECK_SYMMETRY,
+          Command.CHECK_TRANSITIVITY,
+          Command.CHECK_ANTISYMMETRY,
+          Command.CHECK_EQUIVALENCE,
+          Command.GRAPH_SEARCH_IBFS,
+          Command.GRAPH_SEARCH_IDFS,
+          Command.GRAPH_SEARCH_RBFS,
+          Command.GRAPH_SEARCH_RDFS);
+
+  // how many counterexamples a check that fails shows, unless the user asks for more:
+  private static final int COUNTEREXAMPLE_LIMIT = 1;
+
+  // the cache of outputs shared by every calculator, or null if outputs are not cached:
+  private static final ResultCache CACHE = ResultCache.fromProperties();
 
   private final Path file;
 
-  private final Collection<GraphNode> verticies;
+  private final Graph<String> graph;
 
-  private final Collection<GraphEdge> edges;
+  private final PrintStream out;
 
-  private final Graph<String> graph;
+  // the properties of the graph while it is watched for changes, otherwise null:
+  private final RelationProperties properties;
 
   /**
-   * Creates a new graph calculator.
+   * Creates a new graph calculator that prints to standard output.
    *
    * @param filename The name of the test case to read.
    * @throws FileNotFoundException If the file does not exist.
    */
   public GraphCalculator(final String filename) throws FileNotFoundException {
     file = TESTCASES.resolve(filename);
+    out = System.out;
+    properties = null;
+
+    try {
+      graph = GraphLoader.load(file);
+    } catch (FileNotFoundException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Creates a graph calculator that shares an already loaded graph but prints elsewhere.
+   *
+   * @param loaded The calculator whose graph to share.
+   * @param out The stream to print to.
+   */
+  private GraphCalculator(final GraphCalculator loaded, final PrintStream out) {
+    this(loaded.file, loaded.graph, out, loaded.properties);
+  }
 
-    final GraphParser parser = new GraphParser(new FileInputStream(file.toFile()));
+  /**
+   * Creates a graph calculator for a graph that has already been loaded.
+   *
+   * @param file The file the graph was loaded from.
+   * @param graph The graph.
+   * @param out The stream to print to.
+   * @param properties The properties of the graph, or null if they are checked on demand.
+   */
+  private GraphCalculator(
+      final Path file,
+      final Graph<String> graph,
+      final PrintStream out,
+      final RelationProperties properties) {
+    this.file = file;
+    this.graph = graph;
+    this.out = out;
+    this.properties = properties;
+  }
 
-    this.verticies = parser.getNodes().values();
-    this.edges = parser.getEdges().values();
+  /**
+   * Creates a calculator for the same graph that prints to another stream, without reloading the
+   * file. The graph is only read, so both calculators can be used from different threads.
+   *
+   * @param out The stream to print to.
+   * @return The calculator printing to the given stream.
+   */
+  public GraphCalculator withOutput(final PrintStream out) {
+    return new GraphCalculator(this, out);
+  }
 
-    final Set<String> verticies = new HashSet<>();
+  /**
+   * Gets the file the graph was loaded from.
+   *
+   * @return The path of the file.
+   */
+  public Path getFile() {
+    return file;
+  }
 
-    for (final GraphNode node : this.verticies) {
-      verticies.add(node.getId());
+  /**
+   * Creates a calculator for the same graph that keeps its properties, so that they can be
+   * brought up to date from the edges that change each time the file is reloaded.
+   *
+   * @return The calculator that keeps the graph's properties.
+   */
+  public GraphCalculator watch() {
+    if (properties != null) {
+      return this;
     }
 
-    final Set<Edge<String>> edges = new HashSet<>();
+    return new GraphCalculator(file, graph, out, RelationProperties.of(graph));
+  }
+
+  /**
+   * Loads the file again, printing the edges added and removed since it was last loaded and the
+   * properties of the new graph. If the properties are kept, only the edges that changed are
+   * checked to bring them up to date. A file saved without changing its graph prints nothing.
+   *
+   * @return The calculator for the reloaded graph, or this calculator if the graph is unchanged.
+   * @throws IOException If the file cannot be read.
+   */
+  public GraphCalculator reload() throws IOException {
+    final Graph<String> next = GraphLoader.load(file);
+    final GraphChanges<String> changes = GraphChanges.between(graph, next);
 
-    for (final GraphEdge edge : this.edges) {
-      edges.add(new Edge<>(edge.getNode1().getId(), edge.getNode2().getId()));
+    // a vertex on its own can come or go without any edge changing:
+    if (changes.isEmpty() && next.getVerticies().equals(graph.getVerticies())) {
+      return this;
     }
 
-    graph = new Graph<>(verticies, edges);
+    final RelationProperties updated =
+        properties == null ? RelationProperties.of(next) : properties.update(graph, next, changes);
+    final GraphCalculator reloaded = new GraphCalculator(file, next, out, updated);
+
+    MessageCli.WATCH_RELOADED.printMessage(
+        out,
+        TESTCASES.relativize(file).toString(),
+        String.valueOf(changes.getAdded().size()),
+        String.valueOf(changes.getRemoved().size()));
+    reloaded.printReflexitivity();
+    reloaded.printSymmetry();
+    reloaded.printAntiSymmetry();
+    reloaded.printTransitivity();
+    reloaded.printEquivalence();
+
+    return reloaded;
   }
 
-  /** Prints the filename of the test case that is loaded. */
-  public void printInfo() {
-    MessageCli.INFO.printMessage(TESTCASES.relativize(file).toString());
+  /**
+   * Checks if a command only reads the open graph and takes no arguments, so that it can be run by
+   * {@link #execute(Command)}.
+   *
+   * @param command The command to check.
+   * @return If the command can be executed on its own against a calculator.
+   */
+  public static boolean isGraphCommand(final Command command) {
+    return GRAPH_COMMANDS.contains(command);
   }
 
-  /** Prints the set of verticies and edges in the graph. */
-  public void printVerticiesEdges() {
-    final StringBuilder sb = new StringBuilder("Verticies:").append(System.lineSeparator());
+  /**
+   * Executes a command that only reads the graph and takes no arguments, showing one
+   * counterexample if it is a check that fails.
+   *
+   * @param command The command to execute.
+   * @throws IllegalArgumentException If the command is not a graph command.
+   */
+  public void execute(final Command command) {
+    execute(command, COUNTEREXAMPLE_LIMIT);
+  }
 
-    // Vertically print each vertex.
-    for (final GraphNode node : verticies) {
-      sb.append("\t").append(node.getId()).append(System.lineSeparator());
+  /**
+   * Executes a command that only reads the graph. With {@code -Dgraph.cache} set, the searches and
+   * checks print their output from the cache if they were already run on a graph with the same
+   * fingerprint.
+   *
+   * @param command The command to execute.
+   * @param limit The most counterexamples to show if the command is a check that fails, which
+   *     other commands ignore.
+   * @throws IllegalArgumentException If the command is not a graph command.
+   */
+  public void execute(final Command command, final int limit) {
+    final Optional<String> fingerprint = graph.getFingerprint();
+
+    if (CACHE == null || !CACHED_COMMANDS.contains(command) || fingerprint.isEmpty()) {
+      run(command, limit);
+      return;
     }
 
-    sb.append(System.lineSeparator()).append("Edges:").append(System.lineSeparator());
+    CACHE.print(
+        fingerprint.get(),
+        command.name() + "-" + limit,
+        out,
+        copying -> withOutput(copying).run(command, limit));
+  }
 
-    // Vertically print each edge between verticies.
-    for (final GraphEdge edge : edges) {
-      sb.append("\t")
-          .append(edge.getNode1().getId())
-          .append(" -> ")
-          .append(edge.getNode2().getId())
-          .append(System.lineSeparator());
+  /**
+   * Runs a command that only reads the graph, without using the cache.
+   *
+   * @param command The command to run.
+   * @param limit The most counterexamples to show if the command is a check that fails.
+   * @throws IllegalArgumentException If the command is not a graph command.
+   */
+  private void run(final Command command, final int limit) {
+    switch (command) {
+      case INFO:
+        printInfo();
+        break;
+      case LIST_VERTICIES_EDGES:
+        printVerticiesEdges();
+        break;
+      case LIST_ROOT_VERTICIES:
+        printRoots();
+        break;
+      case LIST_REACHABLE_VERTICIES:
+        printReachable();
+        break;
+      case CHECK_REFLEXIVITY:
+        printReflexitivity(limit);
+        break;
+      case CHECK_SYMMETRY:
+        printSymmetry(limit);
+        break;
+      case CHECK_TRANSITIVITY:
+        printTransitivity(limit);
+        break;
+      case CHECK_ANTISYMMETRY:
+        printAntiSymmetry(limit);
+        break;
+      case CHECK_EQUIVALENCE:
+        printEquivalence(limit);
+        break;
+      case ANALYZE:
+        printAnalysis();
+        break;
+      case GRAPH_SEARCH_IBFS:
+        printIterativeBreadthFirstSearch();
+        break;
+      case GRAPH_SEARCH_IDFS:
+        printDepthFirstSearch();
+        break;
+      case GRAPH_SEARCH_RBFS:
+        printRecursiveBreadthFirstSearch();
+        break;
+      case GRAPH_SEARCH_RDFS:
+        printRecursiveDepthFirstSearch();
+        break;
+      default:
+        throw new IllegalArgumentException("Not a graph command: " + command);
     }
+  }
 
-    System.out.print(sb.toString());
+  /** Prints the filename of the test case that is loaded. */
+  public void printInfo() {
+    MessageCli.INFO.printMessage(out, TESTCASES.relativize(file).toString());
+  }
+
+  /** Prints the set of verticies and edges in the graph. */
+  public void printVerticiesEdges() {
+    try (ListingWriter writer = new ListingWriter(out)) {
+      writer.write("Verticies:").newLine();
+
+      // Vertically print each vertex.
+      for (final String vertex : graph.getVerticies()) {
+        writer.write("\t").write(vertex).newLine();
+      }
+
+      writer.newLine().write("Edges:").newLine();
+
+      // Vertically print each edge between verticies.
+      for (final String source : graph.getVerticies()) {
+        for (final String destination : graph.getNeighbours(source)) {
+          writer.write("\t").write(source).write(" -> ").write(destination).newLine();
+        }
+      }
+    }
   }
 
   /** Prints the set of verticies in the graph that are root verticies. */
   public void printRoots() {
-    System.out.println(graph.getRoots());
+    printList(graph.getRoots().iterator());
   }
 
-  /** Prints if the set of verticies in the graph exhibit the reflexivity property. */
+  /** Prints the set of verticies that can be reached from the roots, in numerical order. */
+  public void printReachable() {
+    printList(graph.getReachable().iterator());
+  }
+
+  /**
+   * Prints if the set of verticies in the graph exhibit the reflexivity property, and if not, the
+   * first vertex found without an edge to itself.
+   */
   public void printReflexitivity() {
-    MessageCli.GRAPH_REFLEXIVE.printMessage(prefixNot(graph.isReflexive()));
+    printReflexitivity(COUNTEREXAMPLE_LIMIT);
+  }
+
+  /**
+   * Prints if the set of verticies in the graph exhibit the reflexivity property, and if not, the
+   * first verticies found without an edge to themselves.
+   *
+   * @param limit The most counterexamples to print.
+   */
+  public void printReflexitivity(final int limit) {
+    final List<List<String>> found = findReflexivityCounterexamples(limit);
+    MessageCli.GRAPH_REFLEXIVE.printMessage(out, prefixNot(found.isEmpty()));
+    printReflexivityCounterexamples(found);
   }
 
-  /** Prints if the set of edges in the graph exhibit the symmetric property. */
+  /**
+   * Prints if the set of edges in the graph exhibit the symmetric property, and if not, the first
+   * edge found without an edge back.
+   */
   public void printSymmetry() {
-    MessageCli.GRAPH_SYMMETRIC.printMessage(prefixNot(graph.isSymmetric()));
+    printSymmetry(COUNTEREXAMPLE_LIMIT);
+  }
+
+  /**
+   * Prints if the set of edges in the graph exhibit the symmetric property, and if not, the first
+   * edges found without an edge back.
+   *
+   * @param limit The most counterexamples to print.
+   */
+  public void printSymmetry(final int limit) {
+    final List<List<String>> found = findSymmetryCounterexamples(limit);
+    MessageCli.GRAPH_SYMMETRIC.printMessage(out, prefixNot(found.isEmpty()));
+    printSymmetryCounterexamples(found);
   }
 
-  /** Prints if the set of edges in the graph exhibit transitivity. */
+  /**
+   * Prints if the set of edges in the graph exhibit transitivity, and if not, the first path of
+   * two edges found without a shortcut.
+   */
   public void printTransitivity() {
-    MessageCli.GRAPH_TRANSITIVE.printMessage(prefixNot(graph.isTransitive()));
+    printTransitivity(COUNTEREXAMPLE_LIMIT);
   }
 
-  /** Prints if the set of edges in the graph exhibit anti-symmetry. */
+  /**
+   * Prints if the set of edges in the graph exhibit transitivity, and if not, the first paths of
+   * two edges found without a shortcut.
+   *
+   * @param limit The most counterexamples to print.
+   */
+  public void printTransitivity(final int limit) {
+    final List<List<String>> found = findTransitivityCounterexamples(limit);
+    MessageCli.GRAPH_TRANSITIVE.printMessage(out, prefixNot(found.isEmpty()));
+    printTransitivityCounterexamples(found);
+  }
+
+  /**
+   * Prints if the set of edges in the graph exhibit anti-symmetry, and if not, the first pair of
+   * verticies found with edges both ways.
+   */
   public void printAntiSymmetry() {
-    MessageCli.GRAPH_ANTI_SYMMETRIC.printMessage(prefixNot(graph.isAntiSymmetric()));
+    printAntiSymmetry(COUNTEREXAMPLE_LIMIT);
   }
 
-  /** Prints if the entire graph is considered an equivalence relation. */
+  /**
+   * Prints if the set of edges in the graph exhibit anti-symmetry, and if not, the first pairs of
+   * verticies found with edges both ways.
+   *
+   * @param limit The most counterexamples to print.
+   */
+  public void printAntiSymmetry(final int limit) {
+    final List<List<String>> found =
+        properties != null && properties.isAntiSymmetric()
+            ? List.of()
+            : graph.findAntiSymmetryCounterexamples(limit);
+    MessageCli.GRAPH_ANTI_SYMMETRIC.printMessage(out, prefixNot(found.isEmpty()));
+
+    for (final List<String> pair : found) {
+      MessageCli.ANTI_SYMMETRIC_COUNTEREXAMPLE.printMessage(
+          out, pair.get(0), pair.get(1), pair.get(1), pair.get(0));
+    }
+  }
+
+  /**
+   * Prints if the entire graph is considered an equivalence relation, and if not, the first
+   * counterexample found.
+   */
   public void printEquivalence() {
-    MessageCli.GRAPH_EQUIVALENCE.printMessage(prefixNot(graph.isEquivalence()));
+    printEquivalence(COUNTEREXAMPLE_LIMIT);
+  }
+
+  /**
+   * Prints if the entire graph is considered an equivalence relation, and if not, counterexamples
+   * from the first of reflexivity, symmetry and transitivity that fail, until the limit is used
+   * up. A property is only checked while the limit is not used up, as by then the graph is known
+   * not to be an equivalence relation.
+   *
+   * @param limit The most counterexamples to print.
+   */
+  public void printEquivalence(final int limit) {
+    final List<List<String>> reflexive = findReflexivityCounterexamples(limit);
+    int left = limit - reflexive.size();
+    final List<List<String>> symmetric = left > 0 ? findSymmetryCounterexamples(left) : List.of();
+    left -= symmetric.size();
+    final List<List<String>> transitive =
+        left > 0 ? findTransitivityCounterexamples(left) : List.of();
+    left -= transitive.size();
+
+    MessageCli.GRAPH_EQUIVALENCE.printMessage(out, prefixNot(left == limit));
+    printReflexivityCounterexamples(reflexive);
+    printSymmetryCounterexamples(symmetric);
+    printTransitivityCounterexamples(transitive);
+  }
+
+  /**
+   * Finds the first verticies without an edge to themselves, in the same pass that checks the
+   * graph is reflexive. While the graph is watched, the kept properties skip the pass when the
+   * graph is reflexive.
+   *
+   * @param limit The most counterexamples to find.
+   * @return The counterexamples, which are empty if the graph is reflexive.
+   */
+  private List<List<String>> findReflexivityCounterexamples(final int limit) {
+    return properties != null && properties.isReflexive()
+        ? List.of()
+        : graph.findReflexivityCounterexamples(limit);
+  }
+
+  /**
+   * Finds the first edges without an edge back, in the same pass that checks the graph is
+   * symmetric. While the graph is watched, the kept properties skip the pass when the graph is
+   * symmetric.
+   *
+   * @param limit The most counterexamples to find.
+   * @return The counterexamples, which are empty if the graph is symmetric.
+   */
+  private List<List<String>> findSymmetryCounterexamples(final int limit) {
+    return properties != null && properties.isSymmetric()
+        ? List.of()
+        : graph.findSymmetryCounterexamples(limit);
+  }
+
+  /**
+   * Finds the first paths of two edges without a shortcut, in the same pass that checks the graph
+   * is transitive. While the graph is watched, the kept properties skip the pass when the graph is
+   * transitive.
+   *
+   * @param limit The most counterexamples to find.
+   * @return The counterexamples, which are empty if the graph is transitive.
+   */
+  private List<List<String>> findTransitivityCounterexamples(final int limit) {
+    return properties != null && properties.isTransitive()
+        ? List.of()
+        : graph.findTransitivityCounterexamples(limit);
+  }
+
+  /**
+   * Prints verticies found without an edge to themselves.
+   *
+   * @param found The counterexamples to print.
+   */
+  private void printReflexivityCounterexamples(final List<List<String>> found) {
+    for (final List<String> vertex : found) {
+      MessageCli.REFLEXIVE_COUNTEREXAMPLE.printMessage(out, vertex.get(0));
+    }
+  }
+
+  /**
+   * Prints edges found without an edge back.
+   *
+   * @param found The counterexamples to print.
+   */
+  private void printSymmetryCounterexamples(final List<List<String>> found) {
+    for (final List<String> pair : found) {
+      MessageCli.SYMMETRIC_COUNTEREXAMPLE.printMessage(out, pair.get(0), pair.get(1));
+    }
+  }
+
+  /**
+   * Prints paths of two edges found without a shortcut.
+   *
+   * @param found The counterexamples to print.
+   */
+  private void printTransitivityCounterexamples(final List<List<String>> found) {
+    for (final List<String> path : found) {
+      MessageCli.TRANSITIVE_COUNTEREXAMPLE.printMessage(
+          out, path.get(0), path.get(1), path.get(2), path.get(0), path.get(2));
+    }
+  }
+
+  /** Prints every property of the graph, its roots and its degree statistics. */
+  public void printAnalysis() {
+    final GraphAnalysis<String> analysis = graph.analyze();
+
+    MessageCli.GRAPH_REFLEXIVE.printMessage(out, prefixNot(analysis.isReflexive()));
+    MessageCli.GRAPH_SYMMETRIC.printMessage(out, prefixNot(analysis.isSymmetric()));
+    MessageCli.GRAPH_ANTI_SYMMETRIC.printMessage(out, prefixNot(analysis.isAntiSymmetric()));
+    MessageCli.GRAPH_TRANSITIVE.printMessage(out, prefixNot(analysis.isTransitive()));
+    MessageCli.GRAPH_EQUIVALENCE.printMessage(out, prefixNot(analysis.isEquivalence()));
+    MessageCli.GRAPH_ROOTS.printMessage(out, analysis.getRoots().toString());
+    MessageCli.GRAPH_SIZE.printMessage(
+        out,
+        String.valueOf(analysis.getVertexCount()),
+        String.valueOf(analysis.getEdgeCount()),
+        String.valueOf(analysis.getSelfLoopCount()));
+    MessageCli.GRAPH_OUT_DEGREE.printMessage(
+        out,
+        String.valueOf(analysis.getMinOutDegree()),
+        String.valueOf(analysis.getMaxOutDegree()),
+        String.format(Locale.ROOT, "%.2f", analysis.getMeanDegree()));
+    MessageCli.GRAPH_IN_DEGREE.printMessage(
+        out, String.valueOf(analysis.getMinInDegree()), String.valueOf(analysis.getMaxInDegree()));
+  }
+
+  /** Prints the shape of the graph, without listing any of its verticies or edges. */
+  public void printStatistics() {
+    final GraphStatistics statistics = graph.getStatistics();
+
+    MessageCli.GRAPH_SIZE.printMessage(
+        out,
+        String.valueOf(statistics.getVertexCount()),
+        String.valueOf(statistics.getEdgeCount()),
+        String.valueOf(statistics.getSelfLoopCount()));
+    MessageCli.GRAPH_MAX_DEGREE.printMessage(
+        out,
+        String.valueOf(statistics.getMaxOutDegree()),
+        String.valueOf(statistics.getMaxInDegree()),
+        String.format(Locale.ROOT, "%.2f", statistics.getMeanDegree()));
+    MessageCli.GRAPH_COMPONENTS.printMessage(out, String.valueOf(statistics.getComponentCount()));
+    MessageCli.GRAPH_MEMORY.printMessage(out, String.valueOf(statistics.getEstimatedBytes()));
+    printHistogram("Out", statistics.getOutDegreeHistogram());
+    printHistogram("In", statistics.getInDegreeHistogram());
+  }
+
+  /**
+   * Prints the number of verticies in each bucket of a degree histogram.
+   *
+   * @param direction Which degree the histogram counts.
+   * @param histogram The number of verticies in each bucket.
+   */
+  private void printHistogram(final String direction, final int[] histogram) {
+    MessageCli.GRAPH_HISTOGRAM.printMessage(out, direction);
+
+    for (int bucket = 0; bucket < histogram.length; bucket++) {
+      MessageCli.GRAPH_HISTOGRAM_BUCKET.printMessage(
+          out, GraphStatistics.describeBucket(bucket), String.valueOf(histogram[bucket]));
+    }
   }
 
   /**
@@ -124,27 +593,39 @@ public class GraphCalculator {
   public void printEquivalenceClass(final String vertex) {
     final Object[] equivalenceClass = graph.getEquivalenceClass(vertex).toArray();
     Arrays.sort(equivalenceClass);
-    System.out.println(Arrays.toString(equivalenceClass));
+    printList(Arrays.asList(equivalenceClass).iterator());
   }
 
   /** Prints the search order of an iterative breadth first search. */
   public void printIterativeBreadthFirstSearch() {
-    System.out.println(Arrays.toString(graph.iterativeBreadthFirstSearch().toArray()));
+    printList(graph.breadthFirstIterator());
   }
 
   /** Prints the search order of an iterative depth first search. */
   public void printDepthFirstSearch() {
-    System.out.println(Arrays.toString(graph.iterativeDepthFirstSearch().toArray()));
+    printList(graph.depthFirstIterator());
   }
 
   /** Prints the search order of a recursive breadth first search. */
   public void printRecursiveBreadthFirstSearch() {
-    System.out.println(Arrays.toString(graph.recursiveBreadthFirstSearch().toArray()));
+    printList(graph.recursiveBreadthFirstSearch().iterator());
   }
 
   /** Prints the search order of a recursive depth first search. */
   public void printRecursiveDepthFirstSearch() {
-    System.out.println(Arrays.toString(graph.recursiveDepthFirstSearch().toArray()));
+    printList(graph.recursiveDepthFirstSearch().iterator());
+  }
+
+  /**
+   * Prints elements on one line as they are produced, in the form "[a, b, c]", without collecting
+   * them first.
+   *
+   * @param elements The elements to print.
+   */
+  private void printList(final Iterator<?> elements) {
+    try (ListingWriter writer = new ListingWriter(out)) {
+      writer.writeList(elements);
+    }
   }
 
   /**
@@ -0,0 +1,50 @@
+package nz.ac.auckland.se281;
+
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The graphs a server has loaded, keyed by file name. Each file is parsed at most once, however
+ * many sessions open it, and the loaded graph is then shared between them.
+ */
+public class GraphLibrary implements CalculatorFactory {
+
+  private final ConcurrentMap<String, GraphCalculator> calculators = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the calculator for a test case, loading it if no session has opened it yet.
+   *
+   * @param filename The name of the test case to open.
+   * @return The shared calculator for the test case, which prints to standard output.
+   * @throws FileNotFoundException If the file does not exist.
+   */
+  @Override
+  public GraphCalculator open(final String filename) throws FileNotFoundException {
+    try {
+      return calculators.computeIfAbsent(filename, GraphLibrary::load);
+    } catch (UncheckedIOException e) {
+      if (e.getCause() instanceof FileNotFoundException) {
+        throw (FileNotFoundException) e.getCause();
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * Loads a test case, wrapping a missing file so it can escape {@link
+   * ConcurrentMap#computeIfAbsent}.
+   *
+   * @param filename The name of the test case to load.
+   * @return The calculator for the test case.
+   */
+  private static GraphCalculator load(final String filename) {
+    try {
+      return new GraphCalculator(filename);
+    } catch (FileNotFoundException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package nz.ac.auckland.se281;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+
+/**
+ * Watches a graph file for changes on a background thread, and runs an action each time it is
+ * written.
+ *
+ * <p>The folder of the file is registered with a {@link WatchService}, as single files cannot be.
+ * An editor often saves a file with several writes, so after the first change the watcher waits
+ * {@link #SETTLE_MILLIS} for the rest and runs the action once for all of them.
+ */
+public class GraphWatcher implements Closeable {
+
+  /** How long to wait for a file to finish being written, set with {@code -Dgraph.watch.settle}. */
+  public static final long SETTLE_MILLIS = Long.getLong("graph.watch.settle", 50);
+
+  private final Path file;
+
+  private final WatchService service;
+
+  private final Runnable action;
+
+  /**
+   * Creates a watcher that has registered the file's folder, but has not started waiting yet.
+   *
+   * @param file The file to watch.
+   * @param service The service the folder is registered with.
+   * @param action What to run each time the file changes.
+   */
+  private GraphWatcher(final Path file, final WatchService service, final Runnable action) {
+    this.file = file;
+    this.service = service;
+    this.action = action;
+  }
+
+  /**
+   * Starts watching a file on a daemon thread.
+   *
+   * @param file The file to watch.
+   * @param action What to run, on the watching thread, each time the file changes.
+   * @return The watcher, which stops when it is closed.
+   * @throws IOException If the file's folder cannot be watched.
+   */
+  public static GraphWatcher start(final Path file, final Runnable action) throws IOException {
+    final Path absolute = file.toAbsolutePath().normalize();
+    final WatchService service = FileSystems.getDefault().newWatchService();
+
+    try {
+      absolute
+          .getParent()
+          .register(
+              service,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (IOException | RuntimeException e) {
+      service.close();
+      throw e;
+    }
+
+    final GraphWatcher watcher = new GraphWatcher(absolute, service, action);
+    final Thread thread = new Thread(watcher::run, "graph-watcher");
+    thread.setDaemon(true);
+    thread.start();
+
+    return watcher;
+  }
+
+  /** Waits for changes to the file until the watcher is closed. */
+  private void run() {
+    try {
+      while (true) {
+        if (isFileChanged(service.take())) {
+          // let the rest of the writes land, then take them as part of the same change:
+          Thread.sleep(SETTLE_MILLIS);
+          WatchKey pending;
+
+          while ((pending = service.poll()) != null) {
+            pending.pollEvents();
+            pending.reset();
+          }
+
+          action.run();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // the watcher was closed.
+    }
+  }
+
+  /**
+   * Takes the events of a key and checks if any of them are for the watched file.
+   *
+   * @param key The key whose events to take, which is reset afterwards.
+   * @return If the file was created or changed, or events were lost.
+   */
+  private boolean isFileChanged(final WatchKey key) {
+    boolean changed = false;
+
+    for (final WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW
+          || file.getFileName().equals(event.context())) {
+        changed = true;
+      }
+    }
+
+    key.reset();
+    return changed;
+  }
+
+  /**
+   * Stops watching the file. An action that is already running is left to finish.
+   *
+   * @throws IOException If the watch service cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    service.close();
+  }
+}
@@ -1,7 +1,15 @@
 package nz.ac.auckland.se281;
 
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
 import java.util.Scanner;
+import nz.ac.auckland.se281.io.CsrFile;
+import nz.ac.auckland.se281.metrics.GraphMetrics;
 
 /**
  * The entry point of the graph calculator command line interface.
@@ -11,7 +19,12 @@ import java.util.Scanner;
 public class Main {
   private static final String COMMAND_PREFIX = "graph-calculator> ";
 
-  public static void main(final String[] args) {
+  public static void main(final String[] args) throws IOException {
+    if (args.length > 0 && args[0].equals(QueryServer.SERVER_FLAG)) {
+      QueryServer.start(args);
+      return;
+    }
+
     new Main(new Scanner(System.in)).start();
   }
 
@@ -29,7 +42,11 @@ public class Main {
       // Add extra padding to vertically align the argument counts.
       sb.append("\t".repeat(command.calculatePaddingSize()));
 
-      if (command.getNumArgs() > 0) {
+      final int most = command.getNumArgs() + command.getNumOptionalArgs();
+
+      if (command.getNumOptionalArgs() > 0) {
+        sb.append("[").append(command.getNumArgs()).append("-").append(most).append(" arguments]");
+      } else if (command.getNumArgs() > 0) {
         sb.append("[").append(command.getNumArgs()).append(" arguments]");
       } else {
         sb.append("[no args]");
@@ -44,28 +61,60 @@ public class Main {
 
   private final Scanner scanner;
 
+  private final PrintStream out;
+
+  private final CalculatorFactory factory;
+
   private GraphCalculator calculator;
 
+  private Workspace workspace;
+
+  private GraphWatcher watcher;
+
   /**
    * Create a new command line interface.
    *
    * @param scanner The scanner to read user input from.
    */
   public Main(final Scanner scanner) {
+    this(scanner, System.out, GraphCalculator::new);
+  }
+
+  /**
+   * Create a new command line interface that prints to the given stream and opens files through the
+   * given factory.
+   *
+   * @param scanner The scanner to read user input from.
+   * @param out The stream to print to.
+   * @param factory How to open a graph calculator for a file.
+   */
+  public Main(final Scanner scanner, final PrintStream out, final CalculatorFactory factory) {
     this.scanner = scanner;
+    this.out = out;
+    this.factory = factory;
   }
 
   /** Process commands from the user for the graph calculator command line interface. */
   public void start() {
-    System.out.println(help());
+    out.println(help());
 
     String command;
 
-    // Prompt and process commands until the exit command.
-    do {
-      System.out.print(COMMAND_PREFIX);
-      command = scanner.nextLine().trim();
-    } while (processCommand(command));
+    try {
+      // Prompt and process commands until the exit command, or the input ends.
+      do {
+        out.print(COMMAND_PREFIX);
+        out.flush();
+
+        if (!scanner.hasNextLine()) {
+          return;
+        }
+
+        command = scanner.nextLine().trim();
+      } while (processCommand(command));
+    } finally {
+      stopWatching();
+    }
   }
 
   /**
@@ -74,7 +123,7 @@ public class Main {
    * @param input The command entered by the user.
    * @return If the program should continue to wait for another command.
    */
-  private boolean processCommand(String input) {
+  private synchronized boolean processCommand(String input) {
     // Remove whitespace at the beginning and end of the input.
     input = input.trim();
 
@@ -89,86 +138,118 @@ public class Main {
       // Command names correspond to the enum names.
       command = Command.valueOf(commandStr);
     } catch (final Exception e) {
-      MessageCli.COMMAND_NOT_FOUND.printMessage(commandStr);
+      MessageCli.COMMAND_NOT_FOUND.printMessage(out, commandStr);
       return true;
     }
 
     // Check that the correct number of arguments were provided.
     if (!checkArgs(command, args)) {
-      final String numCommandArgs = String.valueOf(command.getNumArgs());
-      final String plural = command.getNumArgs() > 1 ? "s" : "";
-      MessageCli.WRONG_ARGUMENT_COUNT.printMessage(numCommandArgs, plural, commandStr);
+      final int most = command.getNumArgs() + command.getNumOptionalArgs();
+      final String numCommandArgs =
+          command.getNumOptionalArgs() > 0
+              ? command.getNumArgs() + " to " + most
+              : String.valueOf(command.getNumArgs());
+      final String plural = most > 1 || command.getNumOptionalArgs() > 0 ? "s" : "";
+      MessageCli.WRONG_ARGUMENT_COUNT.printMessage(out, numCommandArgs, plural, commandStr);
       return true;
     }
 
     // A file is only open if there is a calculator instance.
-    // The user cannot do anything other than open a file, exit,
-    // or get help if there is no file.
+    // The user cannot do anything other than open or build a file, open a workspace,
+    // exit, get help or see metrics if there is no file.
     if (calculator == null
         && command != Command.OPEN_FILE
+        && command != Command.BUILD_CSR
+        && command != Command.OPEN_WORKSPACE
+        && command != Command.RUN_ALL
         && command != Command.EXIT
-        && command != Command.HELP) {
-      MessageCli.FILE_NOT_OPEN.printMessage();
+        && command != Command.HELP
+        && command != Command.STATS) {
+      MessageCli.FILE_NOT_OPEN.printMessage(out);
       return true;
     }
 
+    final GraphMetrics.Span span = GraphMetrics.begin("Command." + command);
+
+    try {
+      return executeCommand(command, args);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Execute a command whose arguments have been checked and determine if more commands are
+   * expected.
+   *
+   * @param command The command to execute.
+   * @param args The command name followed by its arguments.
+   * @return If the program should continue to wait for another command.
+   */
+  private boolean executeCommand(final Command command, final String[] args) {
     switch (command) {
       case OPEN_FILE:
         final String filename = args[1];
 
         try {
-          calculator = new GraphCalculator(filename);
-          MessageCli.OPENED_FILE_SUCCESSFULLY.printMessage(filename);
+          calculator = factory.open(filename);
+          stopWatching();
+          MessageCli.OPENED_FILE_SUCCESSFULLY.printMessage(out, filename);
         } catch (FileNotFoundException e) {
-          MessageCli.FILE_NOT_FOUND.printMessage(filename);
+          MessageCli.FILE_NOT_FOUND.printMessage(out, filename);
         }
         break;
-      case INFO:
-        calculator.printInfo();
-        break;
-      case LIST_VERTICIES_EDGES:
-        calculator.printVerticiesEdges();
+      case WATCH:
+        watch();
         break;
-      case LIST_ROOT_VERTICIES:
-        calculator.printRoots();
-        break;
-      case CHECK_REFLEXIVITY:
-        calculator.printReflexitivity();
-        break;
-      case CHECK_SYMMETRY:
-        calculator.printSymmetry();
-        break;
-      case CHECK_TRANSITIVITY:
-        calculator.printTransitivity();
-        break;
-      case CHECK_ANTISYMMETRY:
-        calculator.printAntiSymmetry();
-        break;
-      case CHECK_EQUIVALENCE:
-        calculator.printEquivalence();
+      case BUILD_CSR:
+        buildCsr(args[1], args[2]);
         break;
       case COMPUTE_EQUIVALENCE:
         calculator.printEquivalenceClass(args[1]);
         break;
-      case GRAPH_SEARCH_IBFS:
-        calculator.printIterativeBreadthFirstSearch();
-        break;
-      case GRAPH_SEARCH_IDFS:
-        calculator.printDepthFirstSearch();
-        break;
-      case GRAPH_SEARCH_RBFS:
-        calculator.printRecursiveBreadthFirstSearch();
+      case OPEN_WORKSPACE:
+        final String folder = args[1];
+
+        try {
+          workspace = Workspace.open(folder, factory, out);
+          MessageCli.OPENED_WORKSPACE.printMessage(
+              out, String.valueOf(workspace.size()), workspace.getFolder());
+        } catch (FileNotFoundException e) {
+          MessageCli.WORKSPACE_NOT_FOUND.printMessage(out, folder);
+        }
         break;
-      case GRAPH_SEARCH_RDFS:
-        calculator.printRecursiveDepthFirstSearch();
+      case RUN_ALL:
+        runAll(args[1]);
         break;
       case EXIT:
-        MessageCli.END.printMessage();
+        MessageCli.END.printMessage(out);
 
         // Signal that the program should exit.
         return false;
       case HELP:
-        System.out.println(help());
+        out.println(help());
+        break;
+      case STATS:
+        if (calculator != null) {
+          calculator.printStatistics();
+        }
+
+        if (GraphMetrics.ENABLED) {
+          out.print(GraphMetrics.report());
+        } else {
+          MessageCli.METRICS_DISABLED.printMessage(out);
+        }
+        break;
+      default:
+        // Every other command only reads the open graph, and a check may be given a limit.
+        if (args.length == 1) {
+          calculator.execute(command);
+        } else if (isLimit(args[1])) {
+          calculator.execute(command, Integer.parseInt(args[1]));
+        } else {
+          MessageCli.INVALID_COUNTEREXAMPLE_LIMIT.printMessage(out, args[1]);
+        }
         break;
     }
 
@@ -176,6 +257,148 @@ public class Main {
     return true;
   }
 
+  /**
+   * Start reloading the open file whenever it changes, keeping the properties of its graph so that
+   * only the edges that change are checked each time.
+   */
+  private void watch() {
+    stopWatching();
+    calculator = calculator.watch();
+    final Path file = calculator.getFile();
+    final String filename = GraphCalculator.TESTCASES.relativize(file).toString();
+
+    try {
+      watcher = GraphWatcher.start(file, () -> reload(file));
+      MessageCli.WATCHING.printMessage(out, filename);
+    } catch (IOException e) {
+      MessageCli.WATCH_FAILED.printMessage(out, filename);
+    }
+  }
+
+  /**
+   * Reload the watched file after it changed, then prompt for a command again. A file that cannot
+   * be loaded, such as one that is only partly written, leaves the last graph open. A file saved
+   * without changing its graph prints nothing, so the prompt already shown still stands.
+   *
+   * @param file The file that changed.
+   */
+  private synchronized void reload(final Path file) {
+    // Another file may have been opened since the change was seen.
+    if (watcher == null || !file.equals(calculator.getFile())) {
+      return;
+    }
+
+    try {
+      final GraphCalculator reloaded = calculator.reload();
+
+      if (reloaded == calculator) {
+        return;
+      }
+
+      calculator = reloaded;
+    } catch (IOException | RuntimeException e) {
+      final String filename = GraphCalculator.TESTCASES.relativize(file).toString();
+      MessageCli.WATCH_RELOAD_FAILED.printMessage(out, filename);
+    }
+
+    out.print(COMMAND_PREFIX);
+    out.flush();
+  }
+
+  /** Stop watching the open file, if it is being watched. */
+  private synchronized void stopWatching() {
+    if (watcher == null) {
+      return;
+    }
+
+    try {
+      watcher.close();
+    } catch (IOException e) {
+      // The watcher has stopped either way.
+    }
+
+    watcher = null;
+  }
+
+  /**
+   * Build a DOT file into a file of sorted rows, which is then opened by mapping its rows into
+   * memory rather than parsing it. Both names are resolved against the `testcases` folder, and
+   * must stay inside it, as a query server's sessions can also run this command. The built file
+   * must not exist yet, so no file is ever overwritten, the DOT file least of all.
+   *
+   * @param filename The name of the DOT file to build.
+   * @param output The name of the file to build.
+   */
+  private void buildCsr(final String filename, final String output) {
+    final Path folder = GraphCalculator.TESTCASES.toAbsolutePath().normalize();
+    final Path source = folder.resolve(filename).normalize();
+    final Path destination = folder.resolve(output).normalize();
+
+    if (!source.startsWith(folder) || !Files.isRegularFile(source)) {
+      MessageCli.FILE_NOT_FOUND.printMessage(out, filename);
+      return;
+    }
+
+    if (!isInside(folder, destination)) {
+      MessageCli.BUILD_CSR_OUTSIDE.printMessage(out, output);
+      return;
+    }
+
+    if (Files.exists(destination, LinkOption.NOFOLLOW_LINKS)) {
+      MessageCli.BUILD_CSR_EXISTS.printMessage(out, output);
+      return;
+    }
+
+    try {
+      CsrFile.build(source, destination);
+      MessageCli.BUILT_CSR.printMessage(out, output, filename);
+    } catch (FileAlreadyExistsException e) {
+      MessageCli.BUILD_CSR_EXISTS.printMessage(out, output);
+    } catch (IOException e) {
+      MessageCli.BUILD_CSR_FAILED.printMessage(out, filename, e.getMessage());
+    }
+  }
+
+  /**
+   * Check that a file would be created inside a folder, following any links in the folders on the
+   * way to it.
+   *
+   * @param folder The folder, as a normalized absolute path.
+   * @param file The file, as a normalized absolute path.
+   * @return Whether the file is below the folder, and its parent folder exists.
+   */
+  private static boolean isInside(final Path folder, final Path file) {
+    if (!file.startsWith(folder) || file.equals(folder)) {
+      return false;
+    }
+
+    try {
+      return file.getParent().toRealPath().startsWith(folder.toRealPath());
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Run a graph command on every graph in the open workspace.
+   *
+   * @param name The name of the command, in any case and with dashes or underscores.
+   */
+  private void runAll(final String name) {
+    if (workspace == null) {
+      MessageCli.WORKSPACE_NOT_OPEN.printMessage(out);
+      return;
+    }
+
+    final String commandStr = name.toUpperCase().replaceAll("-", "_");
+
+    try {
+      workspace.runAll(Command.valueOf(commandStr), out);
+    } catch (final IllegalArgumentException e) {
+      MessageCli.WORKSPACE_COMMAND_INVALID.printMessage(out, commandStr);
+    }
+  }
+
   /**
    * Check that the correct number of arguments were provided for the command.
    *
@@ -184,6 +407,22 @@ public class Main {
    * @return If the correct number of arguments were provided.
    */
   private boolean checkArgs(final Command command, final String[] args) {
-    return command.getNumArgs() == args.length - 1;
+    final int given = args.length - 1;
+    return given >= command.getNumArgs()
+        && given <= command.getNumArgs() + command.getNumOptionalArgs();
+  }
+
+  /**
+   * Check that an argument is a limit on how many counterexamples to show.
+   *
+   * @param arg The argument provided by the user.
+   * @return If the argument is a whole number of at least 1.
+   */
+  private boolean isLimit(final String arg) {
+    try {
+      return Integer.parseInt(arg) > 0;
+    } catch (NumberFormatException e) {
+      return false;
+    }
   }
 }
@@ -1,5 +1,7 @@
 package nz.ac.auckland.se281;
 
+import java.io.PrintStream;
+
 /**
  * Templates of messages that can be printed to the CLI.
  *
@@ -22,6 +24,43 @@ public enum MessageCli {
   GRAPH_ANTI_SYMMETRIC("The graph is %santisymmetric"),
   GRAPH_EQUIVALENCE("The graph is %san equivalence relation"),
   GRAPH_TRANSITIVE("The graph is %stransitive"),
+  REFLEXIVE_COUNTEREXAMPLE("Counterexample: %s has no edge to itself"),
+  SYMMETRIC_COUNTEREXAMPLE("Counterexample: %s -> %s has no edge back"),
+  ANTI_SYMMETRIC_COUNTEREXAMPLE("Counterexample: %s -> %s and %s -> %s"),
+  TRANSITIVE_COUNTEREXAMPLE("Counterexample: %s -> %s -> %s has no edge %s -> %s"),
+  INVALID_COUNTEREXAMPLE_LIMIT("Error: counterexample limit '%s' is not a whole number above 0"),
+  GRAPH_ROOTS("Roots: %s"),
+  GRAPH_SIZE("Verticies: %s, edges: %s, self loops: %s"),
+  GRAPH_OUT_DEGREE("Out degree: min %s, max %s, mean %s"),
+  GRAPH_IN_DEGREE("In degree: min %s, max %s"),
+  GRAPH_MAX_DEGREE("Degree: max out %s, max in %s, mean %s"),
+  GRAPH_COMPONENTS("Strongly connected components: %s"),
+  GRAPH_MEMORY("Estimated index memory: %s bytes"),
+  GRAPH_HISTOGRAM("%s degree histogram:"),
+  GRAPH_HISTOGRAM_BUCKET("\t%s: %s"),
+
+  OPENED_WORKSPACE("Opened %s graphs from folder %s"),
+  WORKSPACE_NOT_OPEN("Error: no workspace open"),
+  WORKSPACE_NOT_FOUND("Error: folder '%s' not found in `testcases` folder"),
+  WORKSPACE_FILE_FAILED("Error: could not load graph from file %s"),
+  WORKSPACE_COMMAND_INVALID("Error: \"%s\" cannot be run on every graph of a workspace"),
+  WORKSPACE_RESULT("== %s"),
+
+  BUILT_CSR("Built graph file %s from file %s"),
+  BUILD_CSR_FAILED("Error: could not build graph file from file %s: %s"),
+  BUILD_CSR_OUTSIDE("Error: graph file %s must be in an existing folder of `testcases`"),
+  BUILD_CSR_EXISTS("Error: graph file %s already exists, and is not overwritten"),
+
+  WATCHING("Watching file %s for changes"),
+  WATCH_FAILED("Error: could not watch file %s for changes"),
+  WATCH_RELOADED("Reloaded graph from file %s: %s edges added, %s edges removed"),
+  WATCH_RELOAD_FAILED("Error: could not reload graph from file %s, keeping the last graph"),
+
+  METRICS_DISABLED("Metrics are disabled, restart with -Dgraph.metrics=true to collect them"),
+
+  SERVER_STARTED("Serving graphs on %s"),
+  INVALID_SERVER_ADDRESS(
+      "Error: server address '%s' is not valid, expected tcp:<PORT> or unix:<PATH>"),
 
   END("You closed the terminal. Goodbye.");
 
@@ -59,6 +98,17 @@ public enum MessageCli {
    * @param args The arguments to fill in the template.
    */
   public void printMessage(final String... args) {
-    System.out.println(getMessage(args));
+    printMessage(System.out, args);
+  }
+
+  /**
+   * Print the message to the given stream after filling the template using {@link
+   * #getMessage(String...)}.
+   *
+   * @param out The stream to print to.
+   * @param args The arguments to fill in the template.
+   */
+  public void printMessage(final PrintStream out, final String... args) {
+    out.println(getMessage(args));
   }
 }
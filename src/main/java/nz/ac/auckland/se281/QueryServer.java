@@ -0,0 +1,220 @@
+package nz.ac.auckland.se281;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the graph calculator command line interface to many users at once over a local TCP or
+ * Unix domain socket.
+ *
+ * <p>Each connection is a session that runs the same commands as {@link Main}. Graphs are loaded
+ * through a shared {@link GraphLibrary}, so a file is parsed once and its graph, which is never
+ * modified after it is built, is read by every session without locking.
+ */
+public class QueryServer implements Closeable {
+
+  /** The command line flag that starts the server instead of the interactive interface. */
+  public static final String SERVER_FLAG = "--server";
+
+  private static final String TCP_PREFIX = "tcp:";
+  private static final String UNIX_PREFIX = "unix:";
+  private static final String DEFAULT_ADDRESS = TCP_PREFIX + "7281";
+
+  private final ServerSocketChannel channel;
+
+  private final GraphLibrary library;
+
+  private final ExecutorService sessions = newSessionExecutor();
+
+  /**
+   * Opens a server socket at the given address.
+   *
+   * @param address The local TCP or Unix domain address to listen on.
+   * @param library The graphs to share between sessions.
+   * @throws IOException If the socket cannot be opened.
+   */
+  public QueryServer(final SocketAddress address, final GraphLibrary library) throws IOException {
+    if (address instanceof UnixDomainSocketAddress) {
+      this.channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+    } else {
+      this.channel = ServerSocketChannel.open();
+    }
+
+    try {
+      this.channel.bind(address);
+    } catch (IOException e) {
+      this.channel.close();
+      throw e;
+    }
+
+    this.library = library;
+  }
+
+  /**
+   * Starts a server from the command line arguments {@code --server [tcp:<port> | unix:<path>]
+   * [<FILENAME>...]}, loading the given test cases up front, and serves until the process ends.
+   *
+   * @param args The command line arguments, starting with {@link #SERVER_FLAG}.
+   * @throws IOException If the socket cannot be opened.
+   */
+  public static void start(final String[] args) throws IOException {
+    final String address = args.length > 1 ? args[1] : DEFAULT_ADDRESS;
+    final SocketAddress socketAddress = parseAddress(address);
+
+    if (socketAddress == null) {
+      MessageCli.INVALID_SERVER_ADDRESS.printMessage(address);
+      return;
+    }
+
+    final GraphLibrary library = new GraphLibrary();
+
+    for (int i = 2; i < args.length; i++) {
+      try {
+        library.open(args[i]);
+      } catch (FileNotFoundException e) {
+        MessageCli.FILE_NOT_FOUND.printMessage(args[i]);
+      }
+    }
+
+    try (QueryServer server = new QueryServer(socketAddress, library)) {
+      // close the socket when the process is stopped, so a Unix socket file is not left behind
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> closeQuietly(server)));
+
+      MessageCli.SERVER_STARTED.printMessage(address);
+      server.serve();
+    }
+  }
+
+  /**
+   * Parses a {@code tcp:<port>} or {@code unix:<path>} address. TCP servers only listen on the
+   * loopback interface.
+   *
+   * @param address The address to parse.
+   * @return The socket address, or null if the address is not valid.
+   */
+  static SocketAddress parseAddress(final String address) {
+    if (address.startsWith(UNIX_PREFIX)) {
+      return UnixDomainSocketAddress.of(address.substring(UNIX_PREFIX.length()));
+    }
+
+    if (address.startsWith(TCP_PREFIX)) {
+      try {
+        final int port = Integer.parseInt(address.substring(TCP_PREFIX.length()));
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the address the server is listening on.
+   *
+   * @return The local address of the server socket.
+   * @throws IOException If the socket is closed.
+   */
+  public SocketAddress getAddress() throws IOException {
+    return channel.getLocalAddress();
+  }
+
+  /**
+   * Accepts connections until the server is closed, running each session on its own thread.
+   *
+   * @throws IOException If accepting a connection fails.
+   */
+  public void serve() throws IOException {
+    try {
+      while (channel.isOpen()) {
+        final SocketChannel client = channel.accept();
+        sessions.execute(() -> runSession(client));
+      }
+    } catch (AsynchronousCloseException e) {
+      // the server was closed while waiting for a connection
+    }
+  }
+
+  /**
+   * Runs the command line interface for one connection until the user exits or disconnects.
+   *
+   * @param client The connection to serve.
+   */
+  private void runSession(final SocketChannel client) {
+    try (client;
+        Scanner scanner =
+            new Scanner(Channels.newInputStream(client), StandardCharsets.UTF_8.name());
+        PrintStream out =
+            new PrintStream(
+                new BufferedOutputStream(Channels.newOutputStream(client)),
+                false,
+                StandardCharsets.UTF_8)) {
+      new Main(scanner, out, filename -> library.open(filename).withOutput(out)).start();
+    } catch (IOException e) {
+      // the client has gone away, so there is no one to report to
+    }
+  }
+
+  /** Stops accepting connections, lets running sessions finish and removes any socket file. */
+  @Override
+  public synchronized void close() throws IOException {
+    if (!channel.isOpen()) {
+      return;
+    }
+
+    final SocketAddress address = channel.getLocalAddress();
+
+    channel.close();
+    sessions.shutdown();
+
+    if (address instanceof UnixDomainSocketAddress) {
+      Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+    }
+  }
+
+  /**
+   * Closes a server while the JVM is shutting down, when there is nowhere to report a failure.
+   *
+   * @param server The server to close.
+   */
+  private static void closeQuietly(final QueryServer server) {
+    try {
+      server.close();
+    } catch (IOException e) {
+      // the process is exiting anyway
+    }
+  }
+
+  /**
+   * Creates the executor that runs sessions, using a virtual thread per session when the JVM
+   * supports them.
+   *
+   * @return The session executor.
+   */
+  private static ExecutorService newSessionExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      // virtual threads need Java 21, so fall back to a platform thread per session
+      return Executors.newCachedThreadPool();
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package nz.ac.auckland.se281;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A cache on disk of what commands print, kept by the fingerprint of the graph they were run on, so
+ * that running a search or check again on a graph with the same edges prints the earlier output
+ * instead of working it out again, in this process or a later one.
+ *
+ * <p>Each output is one file in the cache folder, named after the version of the output format,
+ * the fingerprint and the command with its arguments. A file is written under a temporary name and
+ * then moved into place, so processes sharing the folder never read half of one. Reading a file
+ * sets its last modified time, and once the files take more than the size limit the least recently
+ * used ones are deleted. A folder that cannot be read or written is treated as an empty cache, so
+ * commands still print their results.
+ *
+ * <p>Outputs are only reused while commands print the same thing for the same graph. Whenever a
+ * change makes any cached command print something else, {@link #FORMAT_VERSION} must go up, so
+ * that outputs cached by an older build are missed, and then evicted once they are the least
+ * recently used.
+ */
+public final class ResultCache {
+
+  /** The folder to cache results in, set with {@code -Dgraph.cache}, or null to not cache. */
+  public static final String DIRECTORY = System.getProperty("graph.cache");
+
+  /** How many bytes of results to keep, set with {@code -Dgraph.cache.size}. */
+  public static final long MAX_BYTES = Long.getLong("graph.cache.size", 64L << 20);
+
+  /**
+   * The version of what cached commands print. Version 1 was never written into file names, and
+   * version 2 began when counterexamples came to be found in numerical order.
+   */
+  static final int FORMAT_VERSION = 2;
+
+  private static final String SUFFIX = ".out";
+
+  private final Path directory;
+
+  private final long maxBytes;
+
+  /**
+   * Creates a cache in a folder, which is created when the first result is written.
+   *
+   * @param directory The folder to keep results in.
+   * @param maxBytes How many bytes of results to keep before deleting the least recently used.
+   */
+  public ResultCache(final Path directory, final long maxBytes) {
+    this.directory = directory;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Creates the cache set up with {@code -Dgraph.cache} and {@code -Dgraph.cache.size}.
+   *
+   * @return The cache, or null if results are not cached.
+   */
+  public static ResultCache fromProperties() {
+    return DIRECTORY == null ? null : new ResultCache(Path.of(DIRECTORY), MAX_BYTES);
+  }
+
+  /**
+   * Prints the cached output of a command on a graph, or runs the command and caches what it
+   * prints. The output is printed as it is produced and copied aside, and is only cached if the
+   * command finishes and it fits in the cache.
+   *
+   * @param fingerprint The fingerprint of the graph.
+   * @param query The command and its arguments, as letters, digits, dashes and underscores, which
+   *     must print the same output for every graph with the same fingerprint.
+   * @param out The stream to print to.
+   * @param action What runs the command, printing to the stream it is given.
+   */
+  public void print(
+      final String fingerprint,
+      final String query,
+      final PrintStream out,
+      final Consumer<PrintStream> action) {
+    final Path file = directory.resolve(name(fingerprint, query));
+    final byte[] cached = read(file);
+
+    if (cached != null) {
+      out.write(cached, 0, cached.length);
+      out.flush();
+      return;
+    }
+
+    final Recording recording = new Recording(out, maxBytes);
+    final PrintStream copying = new PrintStream(recording, true);
+    action.accept(copying);
+    copying.flush();
+
+    if (recording.copy != null) {
+      write(file, recording.copy.toByteArray());
+    }
+  }
+
+  /**
+   * Names the file of an output.
+   *
+   * @param fingerprint The fingerprint of the graph.
+   * @param query The command and its arguments.
+   * @return The name of the file, which changes with the format version.
+   */
+  static String name(final String fingerprint, final String query) {
+    return "v" + FORMAT_VERSION + "-" + fingerprint + "-" + query + SUFFIX;
+  }
+
+  /**
+   * Reads a cached output and marks it as just used.
+   *
+   * @param file The file of the output.
+   * @return The output, or null if it is not cached or cannot be read.
+   */
+  private byte[] read(final Path file) {
+    final byte[] output;
+
+    try {
+      output = Files.readAllBytes(file);
+    } catch (IOException e) {
+      return null;
+    }
+
+    try {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException e) {
+      // another process evicted it after it was read, which leaves the output as it is.
+    }
+
+    return output;
+  }
+
+  /**
+   * Writes an output into the cache, then evicts the least recently used outputs until the cache
+   * is back under its size limit.
+   *
+   * @param file The file of the output.
+   * @param output The output to keep.
+   */
+  private void write(final Path file, final byte[] output) {
+    Path temporary = null;
+
+    try {
+      Files.createDirectories(directory);
+      temporary = Files.createTempFile(directory, "result", ".tmp");
+      Files.write(temporary, output);
+      Files.move(
+          temporary,
+          file,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      evict();
+    } catch (IOException e) {
+      // the output is not cached, and is worked out again next time:
+      try {
+        if (temporary != null) {
+          Files.deleteIfExists(temporary);
+        }
+      } catch (IOException ignored) {
+        // a temporary file is left behind, which is never read as an output.
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used outputs until the outputs in the folder take no more than the
+   * size limit, skipping any that another process deletes first.
+   *
+   * @throws IOException If the folder cannot be listed.
+   */
+  private void evict() throws IOException {
+    final List<Path> files = new ArrayList<>();
+    final List<BasicFileAttributes> attributes = new ArrayList<>();
+    long total = 0;
+
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (final Path file : stream) {
+        try {
+          final BasicFileAttributes attribute =
+              Files.readAttributes(file, BasicFileAttributes.class);
+          files.add(file);
+          attributes.add(attribute);
+          total += attribute.size();
+        } catch (NoSuchFileException e) {
+          // evicted by another process while the folder was being listed.
+        }
+      }
+    }
+
+    if (total <= maxBytes) {
+      return;
+    }
+
+    final List<Integer> order = new ArrayList<>();
+
+    for (int i = 0; i < files.size(); i++) {
+      order.add(i);
+    }
+
+    order.sort(Comparator.comparing(i -> attributes.get(i).lastModifiedTime()));
+
+    for (final int i : order) {
+      if (total <= maxBytes) {
+        break;
+      }
+
+      Files.deleteIfExists(files.get(i));
+      total -= attributes.get(i).size();
+    }
+  }
+
+  /**
+   * A stream that writes through to another one, keeping a copy of what is written until the copy
+   * would grow past a limit.
+   */
+  private static final class Recording extends OutputStream {
+
+    private final OutputStream target;
+
+    private final long limit;
+
+    // what has been written so far, or null once it grew past the limit:
+    private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+    /**
+     * Creates a stream that writes through to another one.
+     *
+     * @param target The stream to write to.
+     * @param limit The most bytes to keep a copy of.
+     */
+    private Recording(final OutputStream target, final long limit) {
+      this.target = target;
+      this.limit = limit;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      target.write(b, off, len);
+
+      if (copy != null && copy.size() + (long) len > limit) {
+        copy = null;
+      }
+
+      if (copy != null) {
+        copy.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      target.flush();
+    }
+  }
+}
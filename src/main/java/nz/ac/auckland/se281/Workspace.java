@@ -0,0 +1,204 @@
+package nz.ac.auckland.se281;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Every graph file in a folder of the test cases, loaded together so that a command can be run
+ * across all of them at once.
+ *
+ * <p>Files are loaded, and commands run, on a pool of at most {@link #THREADS} threads. Each
+ * file's result is printed as a block as soon as it is ready, so results arrive in the order they
+ * finish rather than the order of the files.
+ */
+public class Workspace {
+
+  /** The most threads used at once, set with {@code -Dgraph.workspace.threads}. */
+  public static final int THREADS =
+      Integer.getInteger("graph.workspace.threads", Runtime.getRuntime().availableProcessors());
+
+  private final String folder;
+
+  private final List<String> filenames;
+
+  private final List<GraphCalculator> calculators;
+
+  /**
+   * Creates a workspace of graphs that have already been loaded.
+   *
+   * @param folder The folder the graphs were loaded from.
+   * @param filenames The names of the graph files, relative to the test cases.
+   * @param calculators The calculator of each file, in the same order.
+   */
+  private Workspace(
+      final String folder, final List<String> filenames, final List<GraphCalculator> calculators) {
+    this.folder = folder;
+    this.filenames = Collections.unmodifiableList(filenames);
+    this.calculators = Collections.unmodifiableList(calculators);
+  }
+
+  /**
+   * Loads every file in a folder of the test cases in parallel. A file that cannot be loaded is
+   * reported and left out of the workspace.
+   *
+   * @param folder The folder to load, relative to the test cases, where "." is the test cases.
+   * @param factory How to open a graph calculator for a file.
+   * @param out The stream to report files that cannot be loaded to.
+   * @return The workspace of the loaded graphs.
+   * @throws FileNotFoundException If the folder does not exist.
+   */
+  public static Workspace open(
+      final String folder, final CalculatorFactory factory, final PrintStream out)
+      throws FileNotFoundException {
+    final Path directory = GraphCalculator.TESTCASES.resolve(folder).normalize();
+
+    if (!Files.isDirectory(directory)) {
+      throw new FileNotFoundException(directory.toString());
+    }
+
+    final List<String> names;
+
+    try (Stream<Path> files = Files.list(directory)) {
+      names =
+          files
+              .filter(Files::isRegularFile)
+              .map(file -> GraphCalculator.TESTCASES.relativize(file).toString())
+              .sorted()
+              .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    final List<Callable<GraphCalculator>> tasks = new ArrayList<>();
+
+    for (final String name : names) {
+      tasks.add(() -> factory.open(name));
+    }
+
+    final List<String> loadedNames = new ArrayList<>();
+    final List<GraphCalculator> loaded = new ArrayList<>();
+    final ExecutorService pool = Executors.newFixedThreadPool(poolSize(tasks.size()));
+
+    try {
+      final List<Future<GraphCalculator>> results = pool.invokeAll(tasks);
+
+      for (int i = 0; i < names.size(); i++) {
+        try {
+          loaded.add(results.get(i).get());
+          loadedNames.add(names.get(i));
+        } catch (ExecutionException e) {
+          MessageCli.WORKSPACE_FILE_FAILED.printMessage(out, names.get(i));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+    }
+
+    return new Workspace(folder, loadedNames, loaded);
+  }
+
+  /**
+   * Gets the folder the graphs were loaded from.
+   *
+   * @return The folder, relative to the test cases.
+   */
+  public String getFolder() {
+    return folder;
+  }
+
+  /**
+   * Gets the number of graphs in the workspace.
+   *
+   * @return The number of graphs.
+   */
+  public int size() {
+    return calculators.size();
+  }
+
+  /**
+   * Runs a command on every graph in parallel, printing each graph's result under its file name
+   * as soon as it finishes.
+   *
+   * @param command The command to run, which must be a graph command.
+   * @param out The stream to print the results to.
+   * @throws IllegalArgumentException If the command is not a graph command.
+   */
+  public void runAll(final Command command, final PrintStream out) {
+    if (!GraphCalculator.isGraphCommand(command)) {
+      throw new IllegalArgumentException("Not a graph command: " + command);
+    }
+
+    final ExecutorService pool = Executors.newFixedThreadPool(poolSize(calculators.size()));
+    final CompletionService<String> results = new ExecutorCompletionService<>(pool);
+
+    try {
+      for (int i = 0; i < calculators.size(); i++) {
+        final String filename = filenames.get(i);
+        final GraphCalculator calculator = calculators.get(i);
+        results.submit(() -> run(filename, calculator, command));
+      }
+
+      for (int i = 0; i < calculators.size(); i++) {
+        try {
+          out.print(results.take().get());
+          out.flush();
+        } catch (ExecutionException e) {
+          throw new IllegalStateException(e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Runs a command on one graph, capturing what it prints so that it can be printed as one block.
+   *
+   * @param filename The name of the graph file.
+   * @param calculator The calculator of the graph.
+   * @param command The command to run.
+   * @return The file name followed by the command's output.
+   */
+  private static String run(
+      final String filename, final GraphCalculator calculator, final Command command) {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    final PrintStream out = new PrintStream(buffer, true, StandardCharsets.UTF_8);
+
+    MessageCli.WORKSPACE_RESULT.printMessage(out, filename);
+    calculator.withOutput(out).execute(command);
+
+    return buffer.toString(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Gets the number of threads to use for a number of tasks.
+   *
+   * @param tasks The number of tasks.
+   * @return The number of threads, which is at least one.
+   */
+  private static int poolSize(final int tasks) {
+    return Math.max(1, Math.min(THREADS, tasks));
+  }
+}
@@ -0,0 +1,78 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Operations over rows of a bit matrix, where a row is a run of {@code long} words.
+ *
+ * <p>Each loop stops at the first word that decides its answer, as a row that fails a check most
+ * often does so long before its end.
+ */
+final class BitRows {
+
+  /** Prevents instances, as this class only groups static operations. */
+  private BitRows() {}
+
+  /**
+   * checks whether two rows hold exactly the same bits.
+   *
+   * @param a the words of the first row.
+   * @param aFrom where the first row starts.
+   * @param b the words of the second row.
+   * @param bFrom where the second row starts.
+   * @param words the number of words in each row.
+   * @return whether the rows are equal.
+   */
+  static boolean equal(long[] a, int aFrom, long[] b, int bFrom, int words) {
+    return Arrays.mismatch(a, aFrom, aFrom + words, b, bFrom, bFrom + words) == -1;
+  }
+
+  /**
+   * checks whether every bit set in one row is also set in another.
+   *
+   * @param subset the words of the row that should be contained.
+   * @param subsetFrom where that row starts.
+   * @param superset the words of the row that should contain it.
+   * @param supersetFrom where that row starts.
+   * @param words the number of words in each row.
+   * @return whether the first row is a subset of the second.
+   */
+  static boolean isSubset(
+      long[] subset, int subsetFrom, long[] superset, int supersetFrom, int words) {
+    for (int word = 0; word < words; word++) {
+      if ((subset[subsetFrom + word] & ~superset[supersetFrom + word]) != 0) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * checks whether two rows have a bit set in common, other than one bit that is ignored.
+   *
+   * @param a the words of the first row.
+   * @param aFrom where the first row starts.
+   * @param b the words of the second row.
+   * @param bFrom where the second row starts.
+   * @param words the number of words in each row.
+   * @param ignored the position in the row of the bit to ignore.
+   * @return whether the rows share any other bit.
+   */
+  static boolean intersectsExcept(
+      long[] a, int aFrom, long[] b, int bFrom, int words, int ignored) {
+    for (int word = 0; word < words; word++) {
+      long shared = a[aFrom + word] & b[bFrom + word];
+
+      if (word == ignored >>> 6) {
+        shared &= ~(1L << ignored);
+      }
+
+      if (shared != 0) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
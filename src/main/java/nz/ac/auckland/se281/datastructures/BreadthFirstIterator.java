@@ -0,0 +1,88 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Visits the verticies of a graph in breadth first order, one at a time as they are asked for. Each
+ * vertex is expanded only when it is returned, so only the frontier of the search is queued.
+ *
+ * @param <T> The type of each vertex.
+ */
+class BreadthFirstIterator<T> implements Iterator<T> {
+
+  private final List<T> verticies;
+  private final int[] offsets;
+  private final IndexRows targets;
+  private final int[] roots;
+  private final long[] visited;
+  private final IntQueue queue = new IntQueue();
+  private int nextRoot;
+
+  /**
+   * Starts a breadth first search from each root in turn.
+   *
+   * @param verticies the verticies of the graph, by index.
+   * @param offsets where each vertex's row of destinations starts.
+   * @param targets the sorted rows of destinations.
+   * @param roots the indices of the verticies to search from, in order.
+   */
+  BreadthFirstIterator(List<T> verticies, int[] offsets, IndexRows targets, int[] roots) {
+    this.verticies = verticies;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.roots = roots;
+    this.visited = new long[(verticies.size() + 63) >>> 6];
+    this.nextRoot = 0;
+  }
+
+  @Override
+  public boolean hasNext() {
+    // move on to the next root that has not been reached yet:
+    while (queue.isEmpty() && nextRoot < roots.length) {
+      int root = roots[nextRoot++];
+
+      if (markVisited(root)) {
+        queue.enqueue(root);
+      }
+    }
+
+    return !queue.isEmpty();
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    int current = queue.dequeue();
+
+    // queue the neighbours that have not been queued before:
+    for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+      if (markVisited(targets.get(i))) {
+        queue.enqueue(targets.get(i));
+      }
+    }
+
+    return verticies.get(current);
+  }
+
+  /**
+   * Marks a vertex as reached.
+   *
+   * @param vertex the index of the vertex.
+   * @return whether the vertex had not been reached before.
+   */
+  private boolean markVisited(int vertex) {
+    long bit = 1L << vertex;
+
+    if ((visited[vertex >>> 6] & bit) != 0) {
+      return false;
+    }
+
+    visited[vertex >>> 6] |= bit;
+    return true;
+  }
+}
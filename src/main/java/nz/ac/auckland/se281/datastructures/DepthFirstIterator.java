@@ -0,0 +1,126 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Visits the verticies of a graph in depth first order, one at a time as they are asked for.
+ *
+ * <p>The search keeps one frame per vertex on the current path: the vertex, and the position in
+ * its row of the next edge to follow. Frames live in two parallel arrays, so the memory used grows
+ * with the depth of the search rather than with the degrees of the verticies it passes through,
+ * and the order is the same as pushing every neighbour onto a stack in reverse.
+ *
+ * @param <T> The type of each vertex.
+ */
+class DepthFirstIterator<T> implements Iterator<T> {
+
+  private static final int NONE = -1;
+
+  private final List<T> verticies;
+  private final int[] offsets;
+  private final IndexRows targets;
+  private final int[] roots;
+  private final long[] visited;
+
+  // the frames of the current path, deepest last:
+  private int[] frameVerticies;
+  private int[] frameEdges;
+  private int depth;
+
+  private int nextRoot;
+  private int nextVertex;
+
+  /**
+   * Starts a depth first search from each root in turn.
+   *
+   * @param verticies the verticies of the graph, by index.
+   * @param offsets where each vertex's row of destinations starts.
+   * @param targets the sorted rows of destinations.
+   * @param roots the indices of the verticies to search from, in order.
+   */
+  DepthFirstIterator(List<T> verticies, int[] offsets, IndexRows targets, int[] roots) {
+    this.verticies = verticies;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.roots = roots;
+    this.visited = new long[(verticies.size() + 63) >>> 6];
+    this.frameVerticies = new int[16];
+    this.frameEdges = new int[16];
+    this.depth = 0;
+    this.nextRoot = 0;
+    this.nextVertex = NONE;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (nextVertex == NONE) {
+      // move on to the next unvisited root once the current branch is exhausted:
+      if (depth == 0) {
+        while (nextRoot < roots.length && isVisited(roots[nextRoot])) {
+          nextRoot++;
+        }
+
+        if (nextRoot == roots.length) {
+          return false;
+        }
+
+        nextVertex = roots[nextRoot++];
+        break;
+      }
+
+      // follow the deepest vertex's next edge to an unvisited neighbour:
+      int current = frameVerticies[depth - 1];
+      int edge = frameEdges[depth - 1];
+
+      while (edge < offsets[current + 1] && isVisited(targets.get(edge))) {
+        edge++;
+      }
+
+      if (edge == offsets[current + 1]) {
+        // every neighbour has been visited, so go back up the path:
+        depth--;
+      } else {
+        frameEdges[depth - 1] = edge + 1;
+        nextVertex = targets.get(edge);
+      }
+    }
+
+    return true;
+  }
+
+  @Override
+  public T next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    int current = nextVertex;
+    nextVertex = NONE;
+    visited[current >>> 6] |= 1L << current;
+
+    // descend into the vertex, starting from its first edge:
+    if (depth == frameVerticies.length) {
+      frameVerticies = Arrays.copyOf(frameVerticies, depth * 2);
+      frameEdges = Arrays.copyOf(frameEdges, depth * 2);
+    }
+
+    frameVerticies[depth] = current;
+    frameEdges[depth] = offsets[current];
+    depth++;
+
+    return verticies.get(current);
+  }
+
+  /**
+   * Checks whether a vertex has been visited.
+   *
+   * @param vertex the index of the vertex.
+   * @return whether the vertex has been visited.
+   */
+  private boolean isVisited(int vertex) {
+    return (visited[vertex >>> 6] & (1L << vertex)) != 0;
+  }
+}
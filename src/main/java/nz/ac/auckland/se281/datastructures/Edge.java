@@ -1,5 +1,7 @@
 package nz.ac.auckland.se281.datastructures;
 
+import java.util.Objects;
+
 /**
  * An edge in a graph that connects two verticies.
  *
@@ -9,8 +11,8 @@ package nz.ac.auckland.se281.datastructures;
  */
 public class Edge<T> {
 
-  private T source;
-  private T destination;
+  private final T source;
+  private final T destination;
 
   /**
    * creates a new edge between two verticies.
@@ -40,4 +42,44 @@ public class Edge<T> {
   public T getDestination() {
     return destination;
   }
+
+  /**
+   * checks if another object is an edge between the same two verticies in the same direction.
+   *
+   * @param other the object to compare with.
+   * @return true if the other object is an equal edge.
+   */
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+
+    if (!(other instanceof Edge)) {
+      return false;
+    }
+
+    Edge<?> edge = (Edge<?>) other;
+    return Objects.equals(source, edge.source) && Objects.equals(destination, edge.destination);
+  }
+
+  /**
+   * hashes the edge from its two verticies, consistently with {@link #equals(Object)}.
+   *
+   * @return the hash code of the edge.
+   */
+  @Override
+  public int hashCode() {
+    return 31 * Objects.hashCode(source) + Objects.hashCode(destination);
+  }
+
+  /**
+   * gets the edge in the same form as a DOT edge statement.
+   *
+   * @return the edge as a string.
+   */
+  @Override
+  public String toString() {
+    return source + " -> " + destination;
+  }
 }
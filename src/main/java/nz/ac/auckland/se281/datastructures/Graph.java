@@ -1,231 +1,1629 @@
 package nz.ac.auckland.se281.datastructures;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import nz.ac.auckland.se281.metrics.GraphMetrics;
 
 /**
  * A graph that is composed of a set of verticies and edges.
  *
+ * <p>A graph is immutable once constructed. Every field is final and only ever read afterwards,
+ * and the views it hands out cannot modify it, so a graph can be shared between threads and
+ * searched or checked by many of them at once without synchronization.
+ *
  * <p>You must NOT change the signature of the existing methods or constructor of this class.
  *
  * @param <T> The type of each vertex, that have a total ordering.
  */
 public class Graph<T extends Comparable<T>> {
 
-  private final Set<T> verticies;
-  private HashMap<T, List<T>> adjacencyList;
+  // rows with at least this many destinations also get a hash set for edge lookups:
+  private static final int HASH_THRESHOLD = 32;
+
+  private static final int EMPTY_SLOT = -1;
+
+  // graphs with at most this many verticies, that have at least one in this many of the edges
+  // they could have, are also kept as a bit matrix, which is then no larger than their rows:
+  private static final int MATRIX_MAX_VERTICIES = 1 << 13;
+  private static final int MATRIX_DENSITY = 32;
+
+  // verticies in numerical order, so that a vertex's index is also its rank and a vertex can be
+  // found by binary searching the numbers:
+  private final List<T> vertexOrder;
+  private final int[] vertexNumbers;
+
+  // the same verticies when they are kept encoded, so that they can be matched without creating
+  // them, or null:
+  private final VertexList<T> encodedVerticies;
+
+  // outgoing edges in compressed sparse row form, destinations sorted within each row, where the
+  // destinations are bit packed or kept off the heap if the graph was built with
+  // GraphOption.PACK_ROWS or GraphOption.OFF_HEAP:
+  private final int[] outOffsets;
+  private final IndexRows outTargets;
+
+  // how many times each outgoing edge was given, or null when multiplicity is not counted:
+  private final int[] outWeights;
+
+  // incoming edges in the same form, or null when the index was not requested:
+  private final int[] inOffsets;
+  private final IndexRows inSources;
+
+  // open addressing hash sets of the destinations of high degree verticies, packed one after
+  // another, where a vertex with an empty range uses a binary search of its row instead:
+  private final int[] hashOffsets;
+  private final int[] hashSlots;
+
+  // for small dense graphs, the adjacency bit matrix and its transpose with one row of words per
+  // vertex, which replace the hash sets and let the relation checks compare whole words at once,
+  // or null for other graphs:
+  private final int matrixWords;
+  private final long[] matrix;
+  private final long[] transposed;
+
+  // the order to visit verticies in for checks whose result does not depend on it, in which
+  // neighbours are close together, or null to visit them in numerical order:
+  private final int[] visitOrder;
+
+  // the SHA-256 hash of the verticies and rows in hex, or null when GraphOption.FINGERPRINT was
+  // not requested:
+  private final String fingerprint;
+
+  /**
+   * Constructs a graph from a set of un ordered verticies and edges.
+   *
+   * @param verticies a set of graph verticies that are unordered.
+   * @param edges a set of graph edges that are unordered.
+   */
+  public Graph(Set<T> verticies, Set<Edge<T>> edges) {
+    this(verticies, edges, EnumSet.of(GraphOption.INDEX_INCOMING));
+  }
+
+  /**
+   * Constructs a graph from a set of un ordered verticies and edges, building only the optional
+   * indexes that are requested.
+   *
+   * @param verticies a set of graph verticies that are unordered.
+   * @param edges a set of graph edges that are unordered.
+   * @param options the optional structures to build alongside the graph.
+   */
+  public Graph(Set<T> verticies, Set<Edge<T>> edges, Set<GraphOption> options) {
+    this(Rows.fromEdges(verticies, edges).collapse(options), options);
+  }
+
+  /**
+   * Constructs a graph from rows of destinations that have already been laid out, such as by a
+   * loader that builds them in parallel. Row {@code i} of the destinations is {@code
+   * targets[offsets[i]]} up to but not including {@code targets[offsets[i + 1]]}.
+   *
+   * <p>A row may repeat a destination, such as when a file lists an edge twice. Repeats are
+   * collapsed into one edge, and counted as its multiplicity when {@link
+   * GraphOption#COUNT_MULTIPLICITY} is requested.
+   *
+   * <p>The list of verticies is kept rather than copied, so that a loader can hand over a compact
+   * list that only creates each vertex when it is asked for, and it must not change afterwards.
+   * The arrays are copied, so the caller may reuse them.
+   *
+   * @param verticies the verticies in numerical order.
+   * @param offsets where each vertex's row starts, followed by the number of edges.
+   * @param targets the indices of each vertex's destinations, sorted within each row.
+   * @param options the optional structures to build alongside the graph.
+   * @throws IllegalArgumentException if the rows do not match the verticies or are not sorted.
+   */
+  public Graph(List<T> verticies, int[] offsets, int[] targets, Set<GraphOption> options) {
+    this(
+        Rows.checked(verticies, offsets.clone(), IntBuffer.wrap(targets.clone()), true)
+            .collapse(options),
+        options);
+  }
+
+  /**
+   * Constructs a graph around rows of destinations that are already laid out in a buffer, such as
+   * a file mapped into memory, keeping the buffer rather than copying it onto the heap. The
+   * destinations are read from the buffer's position up to its limit, laid out in rows as for the
+   * array constructor.
+   *
+   * <p>The buffer is never written to, so unlike the array constructor a row must not repeat a
+   * destination, and every edge has a multiplicity of one. Neither the buffer nor the list of
+   * verticies may change afterwards, but the offsets are copied.
+   *
+   * @param verticies the verticies in numerical order.
+   * @param offsets where each vertex's row starts, followed by the number of edges.
+   * @param targets the indices of each vertex's destinations, strictly increasing within each row.
+   * @param options the optional structures to build alongside the graph.
+   * @throws IllegalArgumentException if the rows do not match the verticies, are not sorted or
+   *     repeat a destination.
+   */
+  public Graph(List<T> verticies, int[] offsets, IntBuffer targets, Set<GraphOption> options) {
+    this(Rows.checked(verticies, offsets.clone(), targets.slice(), false), options);
+  }
+
+  /**
+   * Constructs a graph around its rows of destinations, building the lookup structures and the
+   * requested optional indexes.
+   *
+   * @param rows the verticies in numerical order and their sorted rows of destinations.
+   * @param options the optional structures to build alongside the graph.
+   */
+  private Graph(Rows<T> rows, Set<GraphOption> options) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.new");
+
+    vertexOrder = Collections.unmodifiableList(rows.verticies);
+    vertexNumbers = rows.numbers;
+    encodedVerticies =
+        rows.verticies instanceof VertexList ? (VertexList<T>) rows.verticies : null;
+    outOffsets = rows.offsets;
+    outWeights = rows.weights;
+    IntBuffer targets = rows.targets;
+    int edgeCount = targets.capacity();
+    boolean offHeap = options.contains(GraphOption.OFF_HEAP);
+    boolean packed = options.contains(GraphOption.PACK_ROWS);
+
+    // the incoming rows come out sorted, as the forward rows are visited in source order:
+    if (options.contains(GraphOption.INDEX_INCOMING)) {
+      inOffsets = new int[vertexOrder.size() + 1];
+      int[] sources = new int[edgeCount];
+
+      for (int i = 0; i < edgeCount; i++) {
+        inOffsets[targets.get(i) + 1]++;
+      }
+
+      int[] rowSources = new int[edgeCount];
+
+      for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+        Arrays.fill(rowSources, outOffsets[vertex], outOffsets[vertex + 1], vertex);
+      }
+
+      fillRows(inOffsets, sources, targets, rowSources);
+      inSources = IndexRows.of(IntBuffer.wrap(sources), offHeap, packed);
+    } else {
+      inOffsets = null;
+      inSources = null;
+    }
+
+    // lay dense graphs out as a bit matrix, setting each edge's bit in both directions:
+    int vertexCount = vertexOrder.size();
+
+    if (vertexCount <= MATRIX_MAX_VERTICIES
+        && (long) vertexCount * vertexCount <= (long) MATRIX_DENSITY * edgeCount) {
+      matrixWords = (vertexCount + 63) >>> 6;
+      matrix = new long[vertexCount * matrixWords];
+      transposed = new long[vertexCount * matrixWords];
+
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1]; i++) {
+          int target = targets.get(i);
+          matrix[vertex * matrixWords + (target >>> 6)] |= 1L << target;
+          transposed[target * matrixWords + (vertex >>> 6)] |= 1L << vertex;
+        }
+      }
+    } else {
+      matrixWords = 0;
+      matrix = null;
+      transposed = null;
+    }
+
+    // build hash sets for the rows that are too long to binary search quickly, unless the bit
+    // matrix already answers edge lookups or the rows are packed or kept off the heap to keep it
+    // small:
+    hashOffsets = new int[vertexOrder.size() + 1];
+    boolean hashed = matrix == null && !offHeap && !packed && targets.hasArray();
+
+    for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+      int degree = outOffsets[vertex + 1] - outOffsets[vertex];
+      int size = !hashed || degree < HASH_THRESHOLD ? 0 : Integer.highestOneBit(degree) << 2;
+      hashOffsets[vertex + 1] = hashOffsets[vertex] + size;
+    }
+
+    hashSlots = new int[hashOffsets[vertexOrder.size()]];
+    Arrays.fill(hashSlots, EMPTY_SLOT);
+
+    for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+      if (hashOffsets[vertex] != hashOffsets[vertex + 1]) {
+        for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1]; i++) {
+          hashSlots[findSlot(vertex, targets.get(i))] = targets.get(i);
+        }
+      }
+    }
+
+    visitOrder =
+        options.contains(GraphOption.ORDER_FOR_LOCALITY)
+            ? LocalityOrder.reverseCuthillMcKee(outOffsets, targets)
+            : null;
+    fingerprint =
+        options.contains(GraphOption.FINGERPRINT)
+            ? fingerprint(vertexOrder, outOffsets, targets)
+            : null;
+    outTargets = IndexRows.of(targets, offHeap, packed);
+
+    GraphMetrics.touch(span, vertexOrder.size(), edgeCount);
+    GraphMetrics.end(span);
+  }
+
+  /**
+   * The verticies of a graph in numerical order, with each vertex's sorted row of destination
+   * indices.
+   *
+   * @param <T> The type of each vertex.
+   */
+  private static final class Rows<T extends Comparable<T>> {
+    private final List<T> verticies;
+    private final int[] numbers;
+    private final int[] offsets;
+    private final IntBuffer targets;
+    private final int[] weights;
+
+    /**
+     * Groups laid out rows together.
+     *
+     * @param verticies the verticies in numerical order.
+     * @param numbers the number each vertex stands for.
+     * @param offsets where each vertex's row starts, followed by the number of edges.
+     * @param targets the indices of each vertex's destinations, sorted within each row.
+     * @param weights how many times each edge was given, or null if not counted.
+     */
+    private Rows(
+        List<T> verticies, int[] numbers, int[] offsets, IntBuffer targets, int[] weights) {
+      this.verticies = verticies;
+      this.numbers = numbers;
+      this.offsets = offsets;
+      this.targets = targets;
+      this.weights = weights;
+    }
+
+    /**
+     * Lays out a set of verticies and edges as rows.
+     *
+     * @param verticies a set of graph verticies that are unordered.
+     * @param edges a set of graph edges that are unordered.
+     * @return the rows of the graph.
+     */
+    private static <T extends Comparable<T>> Rows<T> fromEdges(
+        Set<T> verticies, Set<Edge<T>> edges) {
+      // give every vertex a dense index in numerical order:
+      List<T> order = new ArrayList<T>(verticies);
+      order.sort(Comparator.comparingInt(vertex -> Integer.parseInt(vertex.toString())));
+
+      Map<T, Integer> index = new HashMap<T, Integer>();
+
+      for (int i = 0; i < order.size(); i++) {
+        index.put(order.get(i), i);
+      }
+
+      // pack each edge into a key that sorts by source and then destination:
+      long[] keys = new long[edges.size()];
+      int edgeCount = 0;
+
+      for (Edge<T> edge : edges) {
+        Integer source = index.get(edge.getSource());
+        Integer destination = index.get(edge.getDestination());
+
+        if (source == null || destination == null) {
+          throw new IllegalArgumentException("Edge refers to a vertex that is not in the graph");
+        }
+
+        keys[edgeCount++] = (long) source << 32 | destination;
+      }
+
+      Arrays.sort(keys, 0, edgeCount);
+
+      // the sorted keys are already the rows, so unpack them and count each row:
+      int[] offsets = new int[order.size() + 1];
+      int[] targets = new int[edgeCount];
+
+      for (int i = 0; i < edgeCount; i++) {
+        offsets[(int) (keys[i] >>> 32) + 1]++;
+        targets[i] = (int) keys[i];
+      }
+
+      for (int vertex = 0; vertex < order.size(); vertex++) {
+        offsets[vertex + 1] += offsets[vertex];
+      }
+
+      return new Rows<T>(order, numbersOf(order), offsets, IntBuffer.wrap(targets), null);
+    }
+
+    /**
+     * Checks that rows laid out by the caller are well formed.
+     *
+     * @param verticies the verticies in numerical order.
+     * @param offsets where each vertex's row starts, followed by the number of edges.
+     * @param targets the indices of each vertex's destinations, sorted within each row.
+     * @param repeats whether a row may repeat a destination.
+     * @return the rows of the graph.
+     * @throws IllegalArgumentException if the rows do not match the verticies, are not sorted or
+     *     repeat a destination when they may not.
+     */
+    private static <T extends Comparable<T>> Rows<T> checked(
+        List<T> verticies, int[] offsets, IntBuffer targets, boolean repeats) {
+      int[] numbers = numbersOf(verticies);
+
+      for (int vertex = 1; vertex < numbers.length; vertex++) {
+        if (numbers[vertex - 1] > numbers[vertex]) {
+          throw new IllegalArgumentException("Verticies must be in numerical order");
+        }
+      }
+
+      if (offsets.length != verticies.size() + 1
+          || offsets[0] != 0
+          || offsets[verticies.size()] != targets.capacity()) {
+        throw new IllegalArgumentException("Row offsets do not match the verticies and edges");
+      }
+
+      for (int vertex = 0; vertex < verticies.size(); vertex++) {
+        if (offsets[vertex] > offsets[vertex + 1]) {
+          throw new IllegalArgumentException("Row offsets must not decrease");
+        }
+
+        for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+          int target = targets.get(i);
+
+          if (target < 0 || target >= verticies.size()) {
+            throw new IllegalArgumentException("Edge refers to a vertex that is not in the graph");
+          }
+
+          if (i > offsets[vertex] && targets.get(i - 1) > target) {
+            throw new IllegalArgumentException("Rows of destinations must be sorted");
+          }
+
+          if (!repeats && i > offsets[vertex] && targets.get(i - 1) == target) {
+            throw new IllegalArgumentException("Rows of destinations must not repeat");
+          }
+        }
+      }
+
+      return new Rows<T>(verticies, numbers, offsets, targets, null);
+    }
+
+    /**
+     * Collapses destinations that are repeated within a row into a single edge, in place in the
+     * array the rows wrap.
+     *
+     * @param options the options of the graph, which say whether to count the repeats.
+     * @return the rows without repeats, along with how many times each edge was given if
+     *     multiplicity is counted.
+     */
+    private Rows<T> collapse(Set<GraphOption> options) {
+      int[] targets = this.targets.array();
+      int[] counts =
+          options.contains(GraphOption.COUNT_MULTIPLICITY) ? new int[targets.length] : null;
+      int end = 0;
+      int from = 0;
+
+      for (int vertex = 0; vertex < verticies.size(); vertex++) {
+        int to = offsets[vertex + 1];
+        offsets[vertex] = end;
+
+        // the row is sorted, so a repeat always follows the edge it repeats:
+        for (int i = from; i < to; i++) {
+          if (end > offsets[vertex] && targets[end - 1] == targets[i]) {
+            if (counts != null) {
+              counts[end - 1]++;
+            }
+          } else {
+            targets[end] = targets[i];
+
+            if (counts != null) {
+              counts[end] = 1;
+            }
+
+            end++;
+          }
+        }
+
+        from = to;
+      }
+
+      offsets[verticies.size()] = end;
+
+      if (end == targets.length) {
+        return new Rows<T>(verticies, numbers, offsets, this.targets, counts);
+      }
+
+      return new Rows<T>(
+          verticies,
+          numbers,
+          offsets,
+          IntBuffer.wrap(Arrays.copyOf(targets, end)),
+          counts == null ? null : Arrays.copyOf(counts, end));
+    }
+
+    /**
+     * Gets the number each vertex stands for.
+     *
+     * @param verticies the verticies to read.
+     * @return the number of each vertex, in the same order.
+     */
+    private static <T> int[] numbersOf(List<T> verticies) {
+      int[] numbers = new int[verticies.size()];
+
+      if (verticies instanceof VertexList) {
+        VertexList<T> encoded = (VertexList<T>) verticies;
+        Arrays.setAll(numbers, encoded::getNumber);
+        return numbers;
+      }
+
+      for (int vertex = 0; vertex < numbers.length; vertex++) {
+        numbers[vertex] = Integer.parseInt(verticies.get(vertex).toString());
+      }
+
+      return numbers;
+    }
+  }
+
+  /**
+   * A read only view of the destinations of one vertex, which looks each vertex up as it is read
+   * rather than keeping a list of them.
+   */
+  private final class Row extends AbstractList<T> implements RandomAccess {
+    private final int vertex;
+
+    /**
+     * Creates a view of a vertex's destinations.
+     *
+     * @param vertex the index of the vertex.
+     */
+    private Row(int vertex) {
+      this.vertex = vertex;
+    }
+
+    @Override
+    public T get(int index) {
+      Objects.checkIndex(index, size());
+      return vertexOrder.get(outTargets.get(outOffsets[vertex] + index));
+    }
+
+    @Override
+    public int size() {
+      return getOutDegree(vertex);
+    }
+  }
+
+  /**
+   * hashes the verticies and rows of a graph with SHA-256. Each vertex's name is hashed after its
+   * length, then each row after its degree, so graphs only share a hash if they have the same
+   * verticies and edges, however the edges were ordered or repeated when the graph was built.
+   *
+   * @param verticies the verticies in numerical order.
+   * @param offsets where each vertex's row starts, followed by the number of edges.
+   * @param targets the indices of each vertex's destinations, sorted and without repeats.
+   * @param <T> the type of each vertex.
+   * @return the hash in lowercase hex.
+   */
+  private static <T> String fingerprint(List<T> verticies, int[] offsets, IntBuffer targets) {
+    MessageDigest digest;
+
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is missing from this platform", e);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+    buffer.putInt(verticies.size());
+
+    for (T vertex : verticies) {
+      byte[] name = String.valueOf(vertex).getBytes(StandardCharsets.UTF_8);
+      buffer = drain(digest, buffer, Integer.BYTES + name.length);
+      buffer.putInt(name.length).put(name);
+    }
+
+    for (int vertex = 0; vertex + 1 < offsets.length; vertex++) {
+      buffer = drain(digest, buffer, Integer.BYTES);
+      buffer.putInt(offsets[vertex + 1] - offsets[vertex]);
+
+      for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+        buffer = drain(digest, buffer, Integer.BYTES);
+        buffer.putInt(targets.get(i));
+      }
+    }
+
+    drain(digest, buffer, buffer.capacity());
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * hashes what is in a buffer if there is not room for more bytes, then empties it.
+   *
+   * @param digest the hash to add the bytes to.
+   * @param buffer the bytes waiting to be hashed.
+   * @param needed how many more bytes are about to be put in the buffer.
+   * @return the buffer, or a larger one if it could never hold that many bytes.
+   */
+  private static ByteBuffer drain(MessageDigest digest, ByteBuffer buffer, int needed) {
+    if (buffer.remaining() >= needed) {
+      return buffer;
+    }
+
+    digest.update(buffer.flip());
+    buffer.clear();
+    return buffer.capacity() >= needed ? buffer : ByteBuffer.allocate(needed);
+  }
+
+  /**
+   * Turns per row counts into offsets and scatters each value into the row of its key.
+   *
+   * @param offsets the row counts, shifted by one, which become the row offsets.
+   * @param values the array to scatter the values into.
+   * @param keys the row of each value.
+   * @param rowValues the values to scatter.
+   */
+  private static void fillRows(int[] offsets, int[] values, IntBuffer keys, int[] rowValues) {
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+
+    int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+
+    for (int i = 0; i < values.length; i++) {
+      values[next[keys.get(i)]++] = rowValues[i];
+    }
+  }
+
+  /**
+   * Gets the verticies of the graph in numerical order. The position of a vertex in this list is
+   * its index.
+   *
+   * @return an unmodifiable list of the verticies.
+   */
+  public List<T> getVerticies() {
+    return vertexOrder;
+  }
+
+  /**
+   * Gets the number of edges in the graph.
+   *
+   * @return the number of edges.
+   */
+  public int getEdgeCount() {
+    return outTargets.size();
+  }
+
+  /**
+   * Gets the SHA-256 hash of the verticies and edges of the graph, which any graph with the same
+   * verticies and edges shares, such as the same file loaded again or with its edges reordered.
+   *
+   * @return the hash in lowercase hex, or empty if the graph was not built with {@link
+   *     GraphOption#FINGERPRINT}.
+   */
+  public Optional<String> getFingerprint() {
+    return Optional.ofNullable(fingerprint);
+  }
+
+  /**
+   * Gets the index of a vertex, which is its position in numerical order.
+   *
+   * @param vertex the vertex to find.
+   * @return the index of the vertex, or -1 if it is not in the graph.
+   */
+  public int getIndex(T vertex) {
+    int number;
+
+    try {
+      number = Integer.parseInt(vertex.toString());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+
+    int index = Arrays.binarySearch(vertexNumbers, number);
+
+    if (index < 0) {
+      return -1;
+    }
+
+    // distinct verticies such as "1" and "01" can stand for the same number:
+    while (index > 0 && vertexNumbers[index - 1] == number) {
+      index--;
+    }
+
+    for (; index < vertexNumbers.length && vertexNumbers[index] == number; index++) {
+      if (encodedVerticies != null
+          ? encodedVerticies.isAt(index, vertex)
+          : vertexOrder.get(index).equals(vertex)) {
+        return index;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Gets the destinations of a vertex in numerical order.
+   *
+   * @param vertex the vertex whose destinations to get.
+   * @return an unmodifiable list of the destinations, which is empty if the vertex is not in the
+   *     graph.
+   */
+  public List<T> getNeighbours(T vertex) {
+    int index = getIndex(vertex);
+    return index == -1 ? Collections.emptyList() : new Row(index);
+  }
+
+  /**
+   * Gets the indices of the destinations of a vertex, in numerical order, without copying them
+   * unless the rows are packed.
+   *
+   * @param index the index of the vertex.
+   * @return a read only buffer over the vertex's row of destination indices.
+   */
+  public IntBuffer getNeighbourIndices(int index) {
+    return outTargets.slice(outOffsets[index], getOutDegree(index));
+  }
+
+  /**
+   * Gets the indices of the sources of a vertex, in numerical order, without copying them
+   * unless the rows are packed.
+   *
+   * @param index the index of the vertex.
+   * @return a read only buffer over the vertex's row of source indices.
+   * @throws IllegalStateException if the graph was built without {@link
+   *     GraphOption#INDEX_INCOMING}.
+   */
+  public IntBuffer getPredecessorIndices(int index) {
+    if (inOffsets == null) {
+      throw new IllegalStateException("Graph was built without an incoming edge index");
+    }
+
+    return inSources.slice(inOffsets[index], inOffsets[index + 1] - inOffsets[index]);
+  }
+
+  /**
+   * Determines whether there is an edge from the source vertex to the destination vertex.
+   *
+   * @param source the vertex the edge leaves.
+   * @param destination the vertex the edge enters.
+   * @return a boolean value indicating whether the edge exists.
+   */
+  public boolean hasEdge(T source, T destination) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.hasEdge");
+
+    try {
+      int from = getIndex(source);
+      int to = getIndex(destination);
+
+      if (from == -1 || to == -1) {
+        return false;
+      }
+
+      return hasEdge(from, to);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Gets how many times an edge was given when the graph was built. Without {@link
+   * GraphOption#COUNT_MULTIPLICITY} repeats are not counted, so every edge counts once.
+   *
+   * @param source the vertex the edge leaves.
+   * @param destination the vertex the edge enters.
+   * @return the multiplicity of the edge, or 0 if there is no such edge.
+   */
+  public int getMultiplicity(T source, T destination) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.getMultiplicity");
+
+    try {
+      int from = getIndex(source);
+      int to = getIndex(destination);
+
+      if (from == -1 || to == -1) {
+        return 0;
+      }
+
+      int position = outTargets.search(outOffsets[from], outOffsets[from + 1], to);
+
+      if (position < 0) {
+        return 0;
+      }
+
+      return outWeights == null ? 1 : outWeights[position];
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Looks up an edge by vertex index, testing its bit if the graph has a bit matrix, using the
+   * vertex's hash set if it has one and a binary search of its sorted row otherwise.
+   *
+   * @param source the index of the vertex the edge leaves.
+   * @param destination the index of the vertex the edge enters.
+   * @return a boolean value indicating whether the edge exists.
+   */
+  private boolean hasEdge(int source, int destination) {
+    if (matrix != null) {
+      return (matrix[source * matrixWords + (destination >>> 6)] & (1L << destination)) != 0;
+    }
+
+    if (hashOffsets[source] != hashOffsets[source + 1]) {
+      return hashSlots[findSlot(source, destination)] == destination;
+    }
+
+    return outTargets.search(outOffsets[source], outOffsets[source + 1], destination) >= 0;
+  }
+
+  /**
+   * Linearly probes a vertex's hash set for the slot that holds the destination, or the empty slot
+   * where it would go.
+   *
+   * @param source the index of the vertex whose hash set to probe.
+   * @param destination the index of the destination to find.
+   * @return the position of the slot in the packed hash sets.
+   */
+  private int findSlot(int source, int destination) {
+    int mask = hashOffsets[source + 1] - hashOffsets[source] - 1;
+
+    // take as many of the top bits of the multiplied key as the table needs, as the top bits are
+    // the best mixed and a fixed shift would leave large tables with too few bits:
+    int slot = (destination * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask) & mask;
+
+    while (hashSlots[hashOffsets[source] + slot] != EMPTY_SLOT
+        && hashSlots[hashOffsets[source] + slot] != destination) {
+      slot = (slot + 1) & mask;
+    }
+
+    return hashOffsets[source] + slot;
+  }
+
+  /**
+   * Determines the roots of a graph based on the passed in verticies and edges.
+   *
+   * @return the roots of the graph.
+   */
+  public Set<T> getRoots() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.getRoots");
+
+    try {
+      Set<T> roots = new LinkedHashSet<T>();
+
+      for (int root : getRootIndices()) {
+        roots.add(vertexOrder.get(root));
+      }
+
+      GraphMetrics.touch(span, vertexOrder.size(), 0);
+      return roots;
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Finds every vertex that can be reached from the roots, which are the verticies every search
+   * visits, without keeping to any search order. Large graphs are searched depth first from many
+   * verticies at once on the common fork/join pool, so when only the set of verticies is needed
+   * this is faster than collecting a search.
+   *
+   * @return the reachable verticies, in numerical order.
+   */
+  public Set<T> getReachable() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.getReachable");
+
+    try {
+      Set<T> reachable = new LinkedHashSet<T>();
+
+      for (int vertex : ParallelReachability.search(outOffsets, outTargets, getRootIndices())) {
+        reachable.add(vertexOrder.get(vertex));
+      }
+
+      GraphMetrics.touch(span, vertexOrder.size(), outTargets.size());
+      return reachable;
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Finds the indices of the roots of the graph.
+   *
+   * @return the indices of the roots, in numerical order.
+   */
+  private int[] getRootIndices() {
+    boolean equivalence = isEquivalence();
+    return getRootIndices(equivalence, equivalence ? null : getInDegrees());
+  }
+
+  /**
+   * Finds the indices of the roots of the graph from properties that have already been worked out.
+   *
+   * @param equivalence whether the graph is an equivalence relation.
+   * @param inDegrees the in-degree of each vertex, which is only needed if it is not.
+   * @return the indices of the roots, in numerical order.
+   */
+  private int[] getRootIndices(boolean equivalence, int[] inDegrees) {
+    boolean[] isRoot = new boolean[vertexOrder.size()];
+    int count = 0;
+
+    if (equivalence) {
+      // every vertex is in an equivalence class, whose smallest (numerically) vertex is a root:
+      for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+        isRoot[outTargets.get(outOffsets[vertex])] = true;
+      }
+    } else {
+      // otherwise a root has an in-degree of 0 and an out-degree > 0:
+      for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+        isRoot[vertex] = inDegrees[vertex] == 0 && getOutDegree(vertex) > 0;
+      }
+    }
+
+    // indices are in numerical order, so the roots come out sorted:
+    int[] roots = new int[vertexOrder.size()];
+
+    for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+      if (isRoot[vertex]) {
+        roots[count++] = vertex;
+      }
+    }
+
+    return Arrays.copyOf(roots, count);
+  }
+
+  /**
+   * Gets the vertex to visit at a position of a check whose result does not depend on the order
+   * the verticies are visited in.
+   *
+   * @param position how many verticies have been visited before it.
+   * @return the index of the vertex to visit.
+   */
+  private int visitAt(int position) {
+    return visitOrder == null ? position : visitOrder[position];
+  }
+
+  /**
+   * Counts the outgoing edges of a vertex.
+   *
+   * @param vertex the index of the vertex.
+   * @return the out-degree of the vertex.
+   */
+  private int getOutDegree(int vertex) {
+    return outOffsets[vertex + 1] - outOffsets[vertex];
+  }
+
+  /**
+   * Counts the incoming edges of every vertex, using the incoming index when it was built.
+   *
+   * @return the in-degree of each vertex, by index.
+   */
+  private int[] getInDegrees() {
+    int[] inDegrees = new int[vertexOrder.size()];
+
+    if (inOffsets != null) {
+      for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+        inDegrees[vertex] = inOffsets[vertex + 1] - inOffsets[vertex];
+      }
+    } else {
+      for (int i = 0; i < outTargets.size(); i++) {
+        inDegrees[outTargets.get(i)]++;
+      }
+    }
+
+    return inDegrees;
+  }
+
+  /**
+   * Determines whether the graph displays reflexive properties.
+   *
+   * @return a boolean value indicating whether the graph is reflexive or not.
+   */
+  public boolean isReflexive() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.isReflexive");
+
+    try {
+      for (int vertex = 0; vertex < vertexOrder.size(); vertex++) {
+        GraphMetrics.touch(span, 1, 1);
+
+        // check if vertex is its own source:
+        if (!hasEdge(vertex, vertex)) {
+          return false;
+        }
+      }
+
+      return true;
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Determines whether the graph displays symmetric properties.
+   *
+   * @return a boolean value indicating whether the graph is symmetric or not.
+   */
+  public boolean isSymmetric() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.isSymmetric");
+
+    try {
+      return scanSymmetry(span, 1, true).isEmpty();
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Visits the verticies to find edges without an edge going back, testing each vertex first as
+   * quickly as the graph's structures allow, and only listing the edges of the verticies that
+   * fail. Checking symmetry and finding its counterexamples are then the same pass, which stops as
+   * soon as it has found enough.
+   *
+   * @param span the span to count the work in.
+   * @param limit the most counterexamples to find.
+   * @param inVisitOrder whether to visit the verticies in the order for locality, when only
+   *     whether there is a counterexample matters, rather than in numerical order.
+   * @return each pair {@code (a, b)} with an edge {@code a -> b} but no edge {@code b -> a}.
+   */
+  private List<List<T>> scanSymmetry(
+      GraphMetrics.Span span, int limit, boolean inVisitOrder) {
+    List<List<T>> found = new ArrayList<>();
+
+    for (int position = 0; position < vertexOrder.size() && found.size() < limit; position++) {
+      int vertex = inVisitOrder ? visitAt(position) : position;
+
+      // with a bit matrix, each row must be the same as the row of the transpose:
+      if (matrix != null) {
+        GraphMetrics.touch(span, 1, matrixWords);
+        int row = vertex * matrixWords;
+
+        if (BitRows.equal(matrix, row, transposed, row, matrixWords)) {
+          continue;
+        }
+      } else if (inOffsets != null) {
+        // with the incoming index, each vertex must have the same sources as destinations:
+        GraphMetrics.touch(
+            span, 1, getOutDegree(vertex) + inOffsets[vertex + 1] - inOffsets[vertex]);
+
+        if (isSameRow(vertex)) {
+          continue;
+        }
+      } else {
+        GraphMetrics.touch(span, 1, 0);
+      }
+
+      // a vertex that fails may only have a source with no edge back to it, which is then found
+      // from the row of that source instead:
+      GraphMetrics.touch(span, 0, getOutDegree(vertex));
+
+      for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1] && found.size() < limit; i++) {
+        int destination = outTargets.get(i);
+
+        if (!hasEdge(destination, vertex)) {
+          found.add(tupleOf(vertex, destination));
+        }
+      }
+    }
+
+    return found;
+  }
+
+  /**
+   * Merges the sorted outgoing and incoming rows of a vertex to check they hold the same verticies.
+   *
+   * @param vertex the index of the vertex to check.
+   * @return a boolean value indicating whether the destinations and sources are the same.
+   */
+  private boolean isSameRow(int vertex) {
+    int out = outOffsets[vertex];
+    int in = inOffsets[vertex];
+
+    while (out < outOffsets[vertex + 1] && in < inOffsets[vertex + 1]) {
+      if (outTargets.get(out) != inSources.get(in)) {
+        return false;
+      }
+
+      // skip over any repeated edges:
+      int current = outTargets.get(out);
+
+      while (out < outOffsets[vertex + 1] && outTargets.get(out) == current) {
+        out++;
+      }
+
+      while (in < inOffsets[vertex + 1] && inSources.get(in) == current) {
+        in++;
+      }
+    }
+
+    return out == outOffsets[vertex + 1] && in == inOffsets[vertex + 1];
+  }
 
   /**
-   * Constructs a graph from a set of un ordered verticies and edges.
+   * Determines whether the graph displays transitive properties.
    *
-   * @param verticies a set of graph verticies that are unordered.
-   * @param edges a set of graph edges that are unordered.
+   * @return a boolean value indicating whether the graph is transitive or not.
    */
-  public Graph(Set<T> verticies, Set<Edge<T>> edges) {
+  public boolean isTransitive() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.isTransitive");
 
-    this.verticies = verticies;
+    try {
+      return scanTransitivity(span, 1, true).isEmpty();
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
 
-    // stores the DESTINATIONS of the vertex as a value
-    adjacencyList = new HashMap<T, List<T>>();
+  /**
+   * Visits the verticies to find paths of two edges without a shortcut, testing the paths through
+   * each destination together first, and only listing the paths through the destinations that
+   * fail. Checking transitivity and finding its counterexamples are then the same pass, which
+   * stops as soon as it has found enough.
+   *
+   * @param span the span to count the work in.
+   * @param limit the most counterexamples to find.
+   * @param inVisitOrder whether to visit the verticies in the order for locality, when only
+   *     whether there is a counterexample matters, rather than in numerical order.
+   * @return each path {@code (a, b, c)} with edges {@code a -> b} and {@code b -> c} but no edge
+   *     {@code a -> c}.
+   */
+  private List<List<T>> scanTransitivity(
+      GraphMetrics.Span span, int limit, boolean inVisitOrder) {
+    List<List<T>> found = new ArrayList<>();
 
-    // collecting all destinations that have the same source vertex:
-    for (T vertex : verticies) {
+    for (int position = 0; position < vertexOrder.size() && found.size() < limit; position++) {
+      int vertex = inVisitOrder ? visitAt(position) : position;
+      GraphMetrics.touch(span, 1, getOutDegree(vertex));
 
-      List<Integer> temp = new ArrayList<>();
+      // check the destinations of each intermediate vertex:
+      for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1] && found.size() < limit; i++) {
+        int intermediate = outTargets.get(i);
+        GraphMetrics.touch(span, 0, getOutDegree(intermediate));
 
-      for (Edge<T> edge : edges) {
-        if (vertex.equals(edge.getSource())) {
-          temp.add(Integer.parseInt(edge.getDestination().toString()));
+        if (isClosedThrough(vertex, intermediate)) {
+          continue;
+        }
+
+        for (int j = outOffsets[intermediate];
+            j < outOffsets[intermediate + 1] && found.size() < limit;
+            j++) {
+          int destination = outTargets.get(j);
+
+          if (!hasEdge(vertex, destination)) {
+            found.add(tupleOf(vertex, intermediate, destination));
+          }
         }
       }
+    }
+
+    return found;
+  }
 
-      // sorting in order of destination and casting back to generic:
-      List<T> roots = new ArrayList<T>();
-      Collections.sort(temp);
+  /**
+   * Checks that a vertex has an edge to every destination of one of its destinations, so that
+   * every path of two edges through it has a shortcut. With a bit matrix this is one row of the
+   * boolean product of the matrix with itself, checked a word at a time.
+   *
+   * @param vertex the index of the vertex the paths leave.
+   * @param intermediate the index of the destination the paths pass through.
+   * @return a boolean value indicating whether every path has a shortcut.
+   */
+  private boolean isClosedThrough(int vertex, int intermediate) {
+    if (matrix != null) {
+      return BitRows.isSubset(
+          matrix, intermediate * matrixWords, matrix, vertex * matrixWords, matrixWords);
+    }
 
-      for (Integer i : temp) {
-        roots.add((T) i.toString());
+    // check if the vertex has an edge to the intermediate vertex's destination:
+    for (int j = outOffsets[intermediate]; j < outOffsets[intermediate + 1]; j++) {
+      if (!hasEdge(vertex, outTargets.get(j))) {
+        return false;
       }
+    }
+
+    return true;
+  }
 
-      // store the vertex (key) and its destinations into the hashmap:
-      adjacencyList.put(vertex, roots);
+  /**
+   * Determines whether the graph displays antisymmetric properties.
+   *
+   * @return a boolean value indicating whether the graph is anti symmetric or not.
+   */
+  public boolean isAntiSymmetric() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.isAntiSymmetric");
+
+    try {
+      return scanAntiSymmetry(span, 1, true).isEmpty();
+    } finally {
+      GraphMetrics.end(span);
     }
   }
 
   /**
-   * Determines the roots of a graph based on the passed in verticies and edges.
+   * Visits the verticies to find pairs of different verticies with edges both ways, testing each
+   * vertex first as quickly as the graph's structures allow, and only listing the edges of the
+   * verticies that fail. Checking antisymmetry and finding its counterexamples are then the same
+   * pass, which stops as soon as it has found enough.
    *
-   * @return the roots of the graph.
+   * @param span the span to count the work in.
+   * @param limit the most counterexamples to find.
+   * @param inVisitOrder whether to visit the verticies in the order for locality, when only
+   *     whether there is a counterexample matters, rather than in numerical order.
+   * @return each pair {@code (a, b)} with {@code a} before {@code b} and edges {@code a -> b} and
+   *     {@code b -> a}.
    */
-  public Set<T> getRoots() {
-    List<Integer> tempRoots = new ArrayList<>();
+  private List<List<T>> scanAntiSymmetry(
+      GraphMetrics.Span span, int limit, boolean inVisitOrder) {
+    // if (a,b) where a != b, then (b,a) must not exist, and each pair is kept once:
+    Set<List<T>> found = new LinkedHashSet<>();
 
-    // checking for roots:
-    outerloop:
-    for (T vertex : verticies) {
+    for (int position = 0; position < vertexOrder.size() && found.size() < limit; position++) {
+      int vertex = inVisitOrder ? visitAt(position) : position;
 
-      // if the vertex has an equivalence class, then add the smallest (numerically) vertex:
-      if (getEquivalenceClass(vertex).size() > 0) {
-        ArrayList<T> equivalenceClass = new ArrayList<T>(getEquivalenceClass(vertex));
-        tempRoots.add(Integer.parseInt(equivalenceClass.get(0).toString()));
+      // with a bit matrix, a row may only share its diagonal bit with the row of the transpose:
+      if (matrix != null) {
+        GraphMetrics.touch(span, 1, matrixWords);
+        int row = vertex * matrixWords;
 
-        continue;
+        if (!BitRows.intersectsExcept(matrix, row, transposed, row, matrixWords, vertex)) {
+          continue;
+        }
+      } else if (inOffsets != null) {
+        // with the incoming index, no vertex may share a source and destination other than itself:
+        GraphMetrics.touch(
+            span, 1, getOutDegree(vertex) + inOffsets[vertex + 1] - inOffsets[vertex]);
+
+        if (!hasSharedNeighbour(vertex)) {
+          continue;
+        }
+      } else {
+        GraphMetrics.touch(span, 1, 0);
       }
 
-      // We consider two types of nodes as roots: (1) the in-degree of the node is 0 and also has
-      // out degree > 0
+      GraphMetrics.touch(span, 0, getOutDegree(vertex));
 
-      // if the outdegree of a vertex, then it is NOT a root.
-      if (adjacencyList.get(vertex).size() == 0) {
-        continue;
-      }
+      for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1] && found.size() < limit; i++) {
+        int other = outTargets.get(i);
 
-      // if in-degree of the vertex is 0, then it is a root:
-      for (T destination : verticies) {
-        if (adjacencyList.get(destination).contains(vertex)) {
-          continue outerloop;
+        // ignore all cases where a = b, and report (b,a) from whichever end is visited first,
+        // which in numerical order is always a:
+        if (other != vertex && hasEdge(other, vertex)) {
+          found.add(vertex < other ? tupleOf(vertex, other) : tupleOf(other, vertex));
         }
       }
-
-      tempRoots.add(Integer.valueOf((String) vertex));
     }
 
-    // sort the roots and cast back to generic:
-    Set<T> roots = new LinkedHashSet<T>();
-    Collections.sort(tempRoots);
+    return new ArrayList<>(found);
+  }
 
-    for (Integer i : tempRoots) {
-      roots.add((T) i.toString());
+  /**
+   * Merges the sorted outgoing and incoming rows of a vertex to find a vertex, other than itself,
+   * that is both a source and a destination.
+   *
+   * @param vertex the index of the vertex to check.
+   * @return a boolean value indicating whether such a vertex exists.
+   */
+  private boolean hasSharedNeighbour(int vertex) {
+    int out = outOffsets[vertex];
+    int in = inOffsets[vertex];
+
+    while (out < outOffsets[vertex + 1] && in < inOffsets[vertex + 1]) {
+      if (outTargets.get(out) < inSources.get(in)) {
+        out++;
+      } else if (outTargets.get(out) > inSources.get(in)) {
+        in++;
+      } else if (outTargets.get(out) != vertex) {
+        return true;
+      } else {
+        out++;
+        in++;
+      }
     }
 
-    return roots;
+    return false;
   }
 
   /**
-   * Determines whether the graph displays reflexive properties.
+   * Determines whether the graph is an equivalence relation - reflexive, symmetric and transitive.
    *
-   * @return a boolean value indicating whether the graph is reflexive or not.
+   * @return a boolean value indicating whether the graph is an equivalence relation or not.
    */
-  public boolean isReflexive() {
+  public boolean isEquivalence() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.isEquivalence");
 
-    for (T vertex : verticies) {
-      // check if vertex is its own source:
-      if (!adjacencyList.get(vertex).contains(vertex)) {
-        return false;
+    try {
+      // graph is an equivalence relation if it is reflexive, symmetric and transitive:
+      if (isReflexive() && isSymmetric() && isTransitive()) {
+        return true;
       }
-    }
 
-    return true;
+      return false;
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
-   * Determines whether the graph displays symmetric properties.
+   * Finds verticies without an edge to themselves, which show the graph is not reflexive,
+   * stopping as soon as it has found enough. A graph is reflexive exactly when none are found.
    *
-   * @return a boolean value indicating whether the graph is symmetric or not.
+   * @param limit the most counterexamples to find.
+   * @return each vertex {@code (a)} with no edge {@code a -> a}, in numerical order.
    */
-  public boolean isSymmetric() {
+  public List<List<T>> findReflexivityCounterexamples(int limit) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.findReflexivityCounterexamples");
+    List<List<T>> found = new ArrayList<>();
 
-    for (T vertex : verticies) {
-
-      // if vertex has no neighbour, then vacously true:
-      if (adjacencyList.get(vertex).size() == 0) {
-        continue;
-      }
+    try {
+      for (int a = 0; a < vertexOrder.size() && found.size() < limit; a++) {
+        GraphMetrics.touch(span, 1, 1);
 
-      // check if the destination vertex has an edge to the current vertex:
-      for (T destination : adjacencyList.get(vertex)) {
-        if (!adjacencyList.get(destination).contains(vertex)) {
-          return false;
+        if (!hasEdge(a, a)) {
+          found.add(tupleOf(a));
         }
       }
+
+      return found;
+    } finally {
+      GraphMetrics.end(span);
     }
+  }
 
-    return true;
+  /**
+   * Finds edges without an edge going back, which show the graph is not symmetric, stopping as
+   * soon as it has found enough. This is the same pass as {@link #isSymmetric()}, but always in
+   * numerical order so that the smallest counterexamples are found first, and a graph is
+   * symmetric exactly when none are found.
+   *
+   * @param limit the most counterexamples to find.
+   * @return each pair {@code (a, b)} with an edge {@code a -> b} but no edge {@code b -> a}, in
+   *     numerical order.
+   */
+  public List<List<T>> findSymmetryCounterexamples(int limit) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.findSymmetryCounterexamples");
+
+    try {
+      return scanSymmetry(span, limit, false);
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
-   * Determines whether the graph displays transitive properties.
+   * Finds pairs of different verticies with edges both ways, which show the graph is not
+   * antisymmetric, stopping as soon as it has found enough. This is the same pass as {@link
+   * #isAntiSymmetric()}, but always in numerical order so that the smallest counterexamples are
+   * found first, and a graph is antisymmetric exactly when none are found.
    *
-   * @return a boolean value indicating whether the graph is transitive or not.
+   * @param limit the most counterexamples to find.
+   * @return each pair {@code (a, b)} with {@code a} before {@code b} and edges {@code a -> b} and
+   *     {@code b -> a}, in numerical order.
    */
-  public boolean isTransitive() {
+  public List<List<T>> findAntiSymmetryCounterexamples(int limit) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.findAntiSymmetryCounterexamples");
 
-    for (T vertex : verticies) {
+    try {
+      return scanAntiSymmetry(span, limit, false);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
 
-      // if vertex has no neighbour, then vacously true:
-      if (adjacencyList.get(vertex).size() == 0) {
-        continue;
-      }
+  /**
+   * Finds paths of two edges without a shortcut, which show the graph is not transitive, stopping
+   * as soon as it has found enough. This is the same pass as {@link #isTransitive()}, but always
+   * in numerical order so that the smallest counterexamples are found first, and a graph is
+   * transitive exactly when none are found.
+   *
+   * @param limit the most counterexamples to find.
+   * @return each path {@code (a, b, c)} with edges {@code a -> b} and {@code b -> c} but no edge
+   *     {@code a -> c}, in numerical order.
+   */
+  public List<List<T>> findTransitivityCounterexamples(int limit) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.findTransitivityCounterexamples");
 
-      // check if the destination vertex has any edges:
-      for (T intermediate : adjacencyList.get(vertex)) {
+    try {
+      return scanTransitivity(span, limit, false);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
 
-        // if intermediate edge does not exist, then vacously true:
-        if (adjacencyList.get(intermediate).size() == 0) {
-          continue;
+  /**
+   * Gets the verticies at some indices, such as the verticies of a counterexample.
+   *
+   * @param indices the indices of the verticies.
+   * @return an unmodifiable list of the verticies, in the same order.
+   */
+  private List<T> tupleOf(int... indices) {
+    List<T> tuple = new ArrayList<>(indices.length);
+
+    for (int index : indices) {
+      tuple.add(vertexOrder.get(index));
+    }
+
+    return Collections.unmodifiableList(tuple);
+  }
+
+  /**
+   * Works out every property of the graph, its roots and its degree statistics together. Each row
+   * is scanned once for all of the properties, rather than once per property as calling {@link
+   * #isReflexive()}, {@link #isSymmetric()}, {@link #isAntiSymmetric()}, {@link #isTransitive()},
+   * {@link #isEquivalence()} and {@link #getRoots()} in turn would.
+   *
+   * @return the analysis of the graph.
+   */
+  public GraphAnalysis<T> analyze() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.analyze");
+
+    try {
+      int vertexCount = vertexOrder.size();
+      boolean reflexive = true;
+      boolean symmetric = true;
+      boolean antiSymmetric = true;
+      boolean transitive = true;
+      int selfLoops = 0;
+      int minOutDegree = vertexCount == 0 ? 0 : Integer.MAX_VALUE;
+      int maxOutDegree = 0;
+
+      for (int position = 0; position < vertexCount; position++) {
+        int vertex = visitAt(position);
+        int degree = getOutDegree(vertex);
+        GraphMetrics.touch(span, 1, degree);
+        minOutDegree = Math.min(minOutDegree, degree);
+        maxOutDegree = Math.max(maxOutDegree, degree);
+
+        if (hasEdge(vertex, vertex)) {
+          selfLoops++;
+        } else {
+          reflexive = false;
         }
 
-        // check if the vertex has an edge to the intermediate vertex:
-        for (T destination : adjacencyList.get(intermediate)) {
-          if (!adjacencyList.get(vertex).contains(destination)) {
-            return false;
+        if (inOffsets != null) {
+          // merge the sorted outgoing and incoming rows once for both symmetry properties:
+          int out = outOffsets[vertex];
+          int in = inOffsets[vertex];
+
+          while (out < outOffsets[vertex + 1] && in < inOffsets[vertex + 1]) {
+            if (outTargets.get(out) < inSources.get(in)) {
+              symmetric = false;
+              out++;
+            } else if (outTargets.get(out) > inSources.get(in)) {
+              symmetric = false;
+              in++;
+            } else {
+              antiSymmetric &= outTargets.get(out) == vertex;
+              out++;
+              in++;
+            }
+          }
+
+          symmetric &= out == outOffsets[vertex + 1] && in == inOffsets[vertex + 1];
+        } else {
+          // look each reverse edge up once for both symmetry properties:
+          for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1]; i++) {
+            if (outTargets.get(i) != vertex) {
+              if (hasEdge(outTargets.get(i), vertex)) {
+                antiSymmetric = false;
+              } else {
+                symmetric = false;
+              }
+            }
           }
         }
+
+        // the paths of two edges are only followed until one without a shortcut is found:
+        for (int i = outOffsets[vertex]; transitive && i < outOffsets[vertex + 1]; i++) {
+          int intermediate = outTargets.get(i);
+          GraphMetrics.touch(span, 0, getOutDegree(intermediate));
+          transitive = isClosedThrough(vertex, intermediate);
+        }
       }
-    }
 
-    return true;
+      int[] inDegrees = getInDegrees();
+      int minInDegree = vertexCount == 0 ? 0 : Integer.MAX_VALUE;
+      int maxInDegree = 0;
+
+      for (int inDegree : inDegrees) {
+        minInDegree = Math.min(minInDegree, inDegree);
+        maxInDegree = Math.max(maxInDegree, inDegree);
+      }
+
+      Set<T> roots = new LinkedHashSet<T>();
+
+      for (int root : getRootIndices(reflexive && symmetric && transitive, inDegrees)) {
+        roots.add(vertexOrder.get(root));
+      }
+
+      return new GraphAnalysis<T>(
+          reflexive,
+          symmetric,
+          antiSymmetric,
+          transitive,
+          roots,
+          vertexCount,
+          outTargets.size(),
+          selfLoops,
+          minOutDegree,
+          maxOutDegree,
+          minInDegree,
+          maxInDegree);
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
-   * Determines whether the graph displays antisymmetric properties.
+   * Works out the shape of the graph: its size, self loops, degree distribution, strongly connected
+   * components and estimated memory. Every step is linear in the size of the graph, so this can be
+   * used on graphs far too large to list.
    *
-   * @return a boolean value indicating whether the graph is anti symmetric or not.
+   * @return the statistics of the graph.
    */
-  public boolean isAntiSymmetric() {
-    // if (a,b) where a != b, then (b,a) must not exist
+  public GraphStatistics getStatistics() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.getStatistics");
+
+    try {
+      int vertexCount = vertexOrder.size();
+      int[] inDegrees = new int[vertexCount];
+      int[] outHistogram = new int[33];
+      int[] inHistogram = new int[33];
+      int maxOutDegree = 0;
+      int maxInDegree = 0;
+      int selfLoops = 0;
+
+      // count in degrees and self loops in a single pass over the rows:
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        int degree = getOutDegree(vertex);
+        maxOutDegree = Math.max(maxOutDegree, degree);
+        outHistogram[GraphStatistics.bucketOf(degree)]++;
+
+        for (int i = outOffsets[vertex]; i < outOffsets[vertex + 1]; i++) {
+          inDegrees[outTargets.get(i)]++;
+
+          if (outTargets.get(i) == vertex) {
+            selfLoops++;
+          }
+        }
+      }
 
-    for (T vertex : verticies) {
+      for (int inDegree : inDegrees) {
+        maxInDegree = Math.max(maxInDegree, inDegree);
+        inHistogram[GraphStatistics.bucketOf(inDegree)]++;
+      }
+
+      GraphMetrics.touch(span, vertexCount, outTargets.size());
+
+      return new GraphStatistics(
+          vertexCount,
+          outTargets.size(),
+          selfLoops,
+          countComponents(),
+          maxOutDegree,
+          maxInDegree,
+          Arrays.copyOf(outHistogram, GraphStatistics.bucketOf(maxOutDegree) + 1),
+          Arrays.copyOf(inHistogram, GraphStatistics.bucketOf(maxInDegree) + 1),
+          estimateBytes());
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
 
-      // if the vertex has no neighbours, it is vacuously true:
-      if (adjacencyList.get(vertex).size() == 0) {
+  /**
+   * Counts the strongly connected components with Tarjan's algorithm, keeping an explicit frame
+   * of (vertex, next edge) per vertex on the current path instead of recursing.
+   *
+   * @return the number of strongly connected components.
+   */
+  private int countComponents() {
+    int vertexCount = vertexOrder.size();
+    int[] order = new int[vertexCount]; // when each vertex was reached, from 1, or 0 if not yet
+    int[] lowest = new int[vertexCount]; // the earliest vertex reachable that is still on the stack
+    int[] stack = new int[vertexCount];
+    boolean[] onStack = new boolean[vertexCount];
+    int[] frameVerticies = new int[vertexCount];
+    int[] frameEdges = new int[vertexCount];
+    int stackSize = 0;
+    int reached = 0;
+    int components = 0;
+
+    for (int root = 0; root < vertexCount; root++) {
+      if (order[root] != 0) {
         continue;
       }
 
-      // check if the destination vertex has an edge to the current vertex:
-      for (T destination : adjacencyList.get(vertex)) {
+      int depth = 0;
+      order[root] = lowest[root] = ++reached;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      frameVerticies[depth] = root;
+      frameEdges[depth] = outOffsets[root];
+      depth++;
+
+      while (depth > 0) {
+        int current = frameVerticies[depth - 1];
+        int edge = frameEdges[depth - 1];
+
+        if (edge < outOffsets[current + 1]) {
+          frameEdges[depth - 1] = edge + 1;
+          int neighbour = outTargets.get(edge);
+
+          if (order[neighbour] == 0) {
+            // descend into the neighbour before following the vertex's next edge:
+            order[neighbour] = lowest[neighbour] = ++reached;
+            stack[stackSize++] = neighbour;
+            onStack[neighbour] = true;
+            frameVerticies[depth] = neighbour;
+            frameEdges[depth] = outOffsets[neighbour];
+            depth++;
+          } else if (onStack[neighbour]) {
+            lowest[current] = Math.min(lowest[current], order[neighbour]);
+          }
 
-        // ignore all cases where a = b
-        if (vertex.equals(destination)) {
           continue;
         }
 
-        // if (b,a) exists, then return false:
-        if (adjacencyList.get(destination).contains(vertex)) {
-          return false;
+        // the vertex is finished, and heads a component if nothing earlier is reachable from it:
+        if (lowest[current] == order[current]) {
+          int member;
+
+          do {
+            member = stack[--stackSize];
+            onStack[member] = false;
+          } while (member != current);
+
+          components++;
+        }
+
+        depth--;
+
+        if (depth > 0) {
+          int parent = frameVerticies[depth - 1];
+          lowest[parent] = Math.min(lowest[parent], lowest[current]);
         }
       }
     }
 
-    return true;
+    return components;
   }
 
   /**
-   * Determines whether the graph is an equivalence relation - reflexive, symmetric and transitive.
+   * Estimates the memory held by the graph's edge and lookup arrays, including any bit matrix,
+   * counting a 16 byte header for each array.
    *
-   * @return a boolean value indicating whether the graph is an equivalence relation or not.
+   * @return the estimated number of bytes.
    */
-  public boolean isEquivalence() {
-    // graph is an equivalence relation if it is reflexive, symmetric and transitive:
-    if (isReflexive() && isSymmetric() && isTransitive()) {
-      return true;
+  private long estimateBytes() {
+    long bytes = 0;
+
+    for (int[] array :
+        new int[][] {
+          vertexNumbers, outOffsets, outWeights, inOffsets, hashOffsets, hashSlots, visitOrder
+        }) {
+      if (array != null) {
+        bytes += 16 + 4L * array.length;
+      }
     }
 
-    return false;
+    for (IndexRows rows : new IndexRows[] {outTargets, inSources}) {
+      if (rows != null) {
+        bytes += rows.estimateBytes();
+      }
+    }
+
+    if (matrix != null) {
+      bytes += 2 * (16 + 8L * matrix.length);
+    }
+
+    return bytes;
   }
 
   /**
@@ -236,28 +1634,33 @@ public class Graph<T extends Comparable<T>> {
    * @return a set of all the verticies that are in the equivalence class of the inputted vertex.
    */
   public Set<T> getEquivalenceClass(T vertex) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.getEquivalenceClass");
 
-    // initialize new set
-    Set<T> set = new LinkedHashSet<T>();
+    try {
+      // initialize new set
+      Set<T> set = new LinkedHashSet<T>();
 
-    // if inputted vertex is not in the graph, then return empty set:
-    if (!verticies.contains(vertex)) {
-      return set;
-    }
+      // if inputted vertex is not in the graph, then return empty set:
+      if (getIndex(vertex) == -1) {
+        return set;
+      }
 
-    // if not an equivalence relation, then return empty set:
-    if (!isEquivalence()) {
-      return set;
-    }
+      // if not an equivalence relation, then return empty set:
+      if (!isEquivalence()) {
+        return set;
+      }
 
-    // get the vertex's neighbours and add to set:
-    List<T> neighbours = adjacencyList.get(vertex);
+      // get the vertex's neighbours and add to set:
+      List<T> neighbours = getNeighbours(vertex);
 
-    for (T neighbour : neighbours) {
-      set.add(neighbour);
-    }
+      for (T neighbour : neighbours) {
+        set.add(neighbour);
+      }
 
-    return set;
+      return set;
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
@@ -268,28 +1671,54 @@ public class Graph<T extends Comparable<T>> {
    * @return an ordered list of the vertices that were visited during the breadth first search.
    */
   public List<T> iterativeBreadthFirstSearch() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.iterativeBreadthFirstSearch");
+
+    try {
+      Queue<T> queue = new Queue<>();
+      List<T> visited = new ArrayList<T>();
+
+      // getting the roots of the graph:
+      Set<T> roots = getRoots();
 
-    Queue<T> queue = new Queue<>();
-    List<T> visited = new ArrayList<T>();
+      // if there are no roots, then return empty list:
+      if (roots.isEmpty()) {
+        return visited;
+      }
+
+      // do breadth first search:
+      for (T root : roots) {
+        queue.enqueue(root);
 
-    // getting the roots of the graph:
-    Set<T> roots = getRoots();
+        while (!queue.isEmpty()) {
+          executeBreadthFirstSearch(visited, queue);
+        }
+      }
 
-    // if there are no roots, then return empty list:
-    if (roots.isEmpty()) {
+      touchVisited(span, visited);
       return visited;
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Records the verticies a search visited, and the edges leaving them, against the search's span.
+   *
+   * @param span the span of the search, which may be null.
+   * @param visited the list of visited vertices.
+   */
+  private void touchVisited(GraphMetrics.Span span, List<T> visited) {
+    if (span == null) {
+      return;
     }
 
-    // do breadth first search:
-    for (T root : roots) {
-      queue.enqueue(root);
+    long edges = 0;
 
-      while (!queue.isEmpty()) {
-        executeBreadthFirstSearch(visited, queue);
-      }
+    for (T vertex : visited) {
+      edges += getOutDegree(getIndex(vertex));
     }
 
-    return visited;
+    GraphMetrics.touch(span, visited.size(), edges);
   }
 
   /**
@@ -310,7 +1739,7 @@ public class Graph<T extends Comparable<T>> {
     }
 
     // add all of the vertex's neighbours to the queue:
-    for (T neighbour : adjacencyList.get(current)) {
+    for (T neighbour : getNeighbours(current)) {
       if (!visited.contains(neighbour)) {
         queue.enqueue(neighbour);
       }
@@ -325,28 +1754,24 @@ public class Graph<T extends Comparable<T>> {
    * @return an ordered list of the vertices that were visited during the depth first search.
    */
   public List<T> iterativeDepthFirstSearch() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.iterativeDepthFirstSearch");
 
-    Stack<T> stack = new Stack<>();
-    List<T> visited = new ArrayList<T>();
-
-    // getting the roots of the graph:
-    Set<T> roots = getRoots();
-
-    // if there are no roots, then return empty list:
-    if (roots.isEmpty()) {
-      return visited;
-    }
+    try {
+      List<T> visited = new ArrayList<T>();
 
-    // depth first search:
-    for (T root : roots) {
-      stack.push(root);
+      // the frames of the search only grow with its depth, not with the degrees it meets:
+      Iterator<T> search =
+          new DepthFirstIterator<T>(vertexOrder, outOffsets, outTargets, getRootIndices());
 
-      while (!stack.isEmpty()) {
-        executeDepthFirstSearch(visited, stack);
+      while (search.hasNext()) {
+        visited.add(search.next());
       }
-    }
 
-    return visited;
+      touchVisited(span, visited);
+      return visited;
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
@@ -365,7 +1790,7 @@ public class Graph<T extends Comparable<T>> {
     }
 
     // add all of the vertex's neighbours to the stack in REVERSE order
-    List<T> neighbours = adjacencyList.get(current);
+    List<T> neighbours = getNeighbours(current);
 
     for (int i = neighbours.size() - 1; i >= 0; i--) {
       T neighbour = neighbours.get(i);
@@ -384,24 +1809,30 @@ public class Graph<T extends Comparable<T>> {
    * @return an ordered list of the vertices that were visited during the breadth first search.
    */
   public List<T> recursiveBreadthFirstSearch() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.recursiveBreadthFirstSearch");
 
-    // initializing variables:
-    List<T> visited = new ArrayList<T>();
-    Queue<T> queue = new Queue<>();
-    Set<T> roots = getRoots();
+    try {
+      // initializing variables:
+      List<T> visited = new ArrayList<T>();
+      Queue<T> queue = new Queue<>();
+      Set<T> roots = getRoots();
 
-    // if there are no roots, then return empty list:
-    if (roots.isEmpty()) {
-      return visited;
-    }
+      // if there are no roots, then return empty list:
+      if (roots.isEmpty()) {
+        return visited;
+      }
 
-    // do recursive breadth first search:
-    for (T root : roots) {
-      queue.enqueue(root);
-      executeBreadthFirstSearchRecursive(root, visited, queue);
-    }
+      // do recursive breadth first search:
+      for (T root : roots) {
+        queue.enqueue(root);
+        executeBreadthFirstSearchRecursive(root, visited, queue);
+      }
 
-    return visited;
+      touchVisited(span, visited);
+      return visited;
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
@@ -434,24 +1865,30 @@ public class Graph<T extends Comparable<T>> {
    * @return an ordered list of the vertices that were visited during the depth first search.
    */
   public List<T> recursiveDepthFirstSearch() {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.recursiveDepthFirstSearch");
 
-    // initializing variables:
-    List<T> visited = new ArrayList<T>();
-    Stack<T> stack = new Stack<>();
-    Set<T> roots = getRoots();
+    try {
+      // initializing variables:
+      List<T> visited = new ArrayList<T>();
+      Stack<T> stack = new Stack<>();
+      Set<T> roots = getRoots();
 
-    // if there are no roots, then return empty list:
-    if (roots.isEmpty()) {
-      return visited;
-    }
+      // if there are no roots, then return empty list:
+      if (roots.isEmpty()) {
+        return visited;
+      }
 
-    // do recursive depth first search:
-    for (T root : roots) {
-      stack.push(root);
-      executeDepthFirstSearchRecursive(root, visited, stack);
-    }
+      // do recursive depth first search:
+      for (T root : roots) {
+        stack.push(root);
+        executeDepthFirstSearchRecursive(root, visited, stack);
+      }
 
-    return visited;
+      touchVisited(span, visited);
+      return visited;
+    } finally {
+      GraphMetrics.end(span);
+    }
   }
 
   /**
@@ -474,4 +1911,125 @@ public class Graph<T extends Comparable<T>> {
     executeDepthFirstSearch(visited, stack);
     executeDepthFirstSearchRecursive(vertex, visited, stack);
   }
+
+  /**
+   * Lazily performs a breadth first search of the graph. Verticies are visited in the same order as
+   * {@link #iterativeBreadthFirstSearch()}, but each is only expanded when the iterator reaches it,
+   * so stopping early skips the rest of the search.
+   *
+   * @return an iterator over the verticies in breadth first order.
+   */
+  public Iterator<T> breadthFirstIterator() {
+    return new BreadthFirstIterator<T>(vertexOrder, outOffsets, outTargets, getRootIndices());
+  }
+
+  /**
+   * Lazily performs a depth first search of the graph. Verticies are visited in the same order as
+   * {@link #iterativeDepthFirstSearch()}, but each is only expanded when the iterator reaches it,
+   * so stopping early skips the rest of the search.
+   *
+   * @return an iterator over the verticies in depth first order.
+   */
+  public Iterator<T> depthFirstIterator() {
+    return new DepthFirstIterator<T>(vertexOrder, outOffsets, outTargets, getRootIndices());
+  }
+
+  /**
+   * Creates a traverser that runs allocation free breadth and depth first traversals of this graph,
+   * reporting each vertex and edge by index to a {@link GraphVisitor}. The traverser reuses its
+   * buffers between traversals, so keep one per thread rather than creating one per traversal.
+   *
+   * @return a new traverser for this graph.
+   */
+  public GraphTraverser newTraverser() {
+    return new GraphTraverser(outOffsets, outTargets, getRootIndices());
+  }
+
+  /**
+   * Lazily performs a breadth first search of the graph as an ordered stream, so that operations
+   * such as {@code limit} and {@code takeWhile} stop the search early.
+   *
+   * @return a stream of the verticies in breadth first order.
+   */
+  public Stream<T> breadthFirstStream() {
+    return toStream(breadthFirstIterator());
+  }
+
+  /**
+   * Lazily performs a depth first search of the graph as an ordered stream, so that operations
+   * such as {@code limit} and {@code takeWhile} stop the search early.
+   *
+   * @return a stream of the verticies in depth first order.
+   */
+  public Stream<T> depthFirstStream() {
+    return toStream(depthFirstIterator());
+  }
+
+  /**
+   * Performs a breadth first search that stops at the first vertex matching the condition.
+   *
+   * @param condition the condition to search for.
+   * @return the first matching vertex in breadth first order, or empty if none match.
+   */
+  public Optional<T> breadthFirstSearchUntil(Predicate<? super T> condition) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.breadthFirstSearchUntil");
+
+    try {
+      return searchUntil(breadthFirstIterator(), condition, span);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Performs a depth first search that stops at the first vertex matching the condition.
+   *
+   * @param condition the condition to search for.
+   * @return the first matching vertex in depth first order, or empty if none match.
+   */
+  public Optional<T> depthFirstSearchUntil(Predicate<? super T> condition) {
+    final GraphMetrics.Span span = GraphMetrics.begin("Graph.depthFirstSearchUntil");
+
+    try {
+      return searchUntil(depthFirstIterator(), condition, span);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Advances a search until a vertex matches the condition.
+   *
+   * @param search the lazy search to advance.
+   * @param condition the condition to search for.
+   * @param span the span of the search, which may be null.
+   * @return the first matching vertex, or empty if the search ends first.
+   */
+  private Optional<T> searchUntil(
+      Iterator<T> search, Predicate<? super T> condition, GraphMetrics.Span span) {
+    while (search.hasNext()) {
+      T vertex = search.next();
+      if (span != null) {
+        GraphMetrics.touch(span, 1, getOutDegree(getIndex(vertex)));
+      }
+
+      if (condition.test(vertex)) {
+        return Optional.of(vertex);
+      }
+    }
+
+    return Optional.empty();
+  }
+
+  /**
+   * Wraps a lazy search as a sequential stream.
+   *
+   * @param search the lazy search.
+   * @return a stream over the search.
+   */
+  private Stream<T> toStream(Iterator<T> search) {
+    int characteristics = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+    Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(search, characteristics);
+    return StreamSupport.stream(spliterator, false);
+  }
 }
@@ -0,0 +1,195 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The properties, roots and degree statistics of a graph, found together in a single pass by
+ * {@link Graph#analyze()}.
+ *
+ * @param <T> The type of each vertex.
+ */
+public final class GraphAnalysis<T> {
+
+  private final boolean reflexive;
+  private final boolean symmetric;
+  private final boolean antiSymmetric;
+  private final boolean transitive;
+  private final Set<T> roots;
+  private final int vertexCount;
+  private final int edgeCount;
+  private final int selfLoopCount;
+  private final int minOutDegree;
+  private final int maxOutDegree;
+  private final int minInDegree;
+  private final int maxInDegree;
+
+  /**
+   * creates the analysis of a graph.
+   *
+   * @param reflexive whether the graph is reflexive.
+   * @param symmetric whether the graph is symmetric.
+   * @param antiSymmetric whether the graph is antisymmetric.
+   * @param transitive whether the graph is transitive.
+   * @param roots the roots of the graph, in numerical order.
+   * @param vertexCount the number of verticies.
+   * @param edgeCount the number of edges.
+   * @param selfLoopCount the number of verticies with an edge to themselves.
+   * @param minOutDegree the smallest out degree.
+   * @param maxOutDegree the largest out degree.
+   * @param minInDegree the smallest in degree.
+   * @param maxInDegree the largest in degree.
+   */
+  GraphAnalysis(
+      boolean reflexive,
+      boolean symmetric,
+      boolean antiSymmetric,
+      boolean transitive,
+      Set<T> roots,
+      int vertexCount,
+      int edgeCount,
+      int selfLoopCount,
+      int minOutDegree,
+      int maxOutDegree,
+      int minInDegree,
+      int maxInDegree) {
+    this.reflexive = reflexive;
+    this.symmetric = symmetric;
+    this.antiSymmetric = antiSymmetric;
+    this.transitive = transitive;
+    this.roots = Collections.unmodifiableSet(roots);
+    this.vertexCount = vertexCount;
+    this.edgeCount = edgeCount;
+    this.selfLoopCount = selfLoopCount;
+    this.minOutDegree = minOutDegree;
+    this.maxOutDegree = maxOutDegree;
+    this.minInDegree = minInDegree;
+    this.maxInDegree = maxInDegree;
+  }
+
+  /**
+   * checks if every vertex has an edge to itself.
+   *
+   * @return true if the graph is reflexive.
+   */
+  public boolean isReflexive() {
+    return reflexive;
+  }
+
+  /**
+   * checks if every edge has an edge going back the other way.
+   *
+   * @return true if the graph is symmetric.
+   */
+  public boolean isSymmetric() {
+    return symmetric;
+  }
+
+  /**
+   * checks if no edge between two different verticies has an edge going back the other way.
+   *
+   * @return true if the graph is antisymmetric.
+   */
+  public boolean isAntiSymmetric() {
+    return antiSymmetric;
+  }
+
+  /**
+   * checks if every path of two edges has an edge going straight from its start to its end.
+   *
+   * @return true if the graph is transitive.
+   */
+  public boolean isTransitive() {
+    return transitive;
+  }
+
+  /**
+   * checks if the graph is reflexive, symmetric and transitive.
+   *
+   * @return true if the graph is an equivalence relation.
+   */
+  public boolean isEquivalence() {
+    return reflexive && symmetric && transitive;
+  }
+
+  /**
+   * gets the roots of the graph, the same as {@link Graph#getRoots()}.
+   *
+   * @return an unmodifiable set of the roots, in numerical order.
+   */
+  public Set<T> getRoots() {
+    return roots;
+  }
+
+  /**
+   * gets the number of verticies in the graph.
+   *
+   * @return the number of verticies.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * gets the number of edges in the graph.
+   *
+   * @return the number of edges.
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * gets the number of verticies with an edge to themselves.
+   *
+   * @return the number of self loops.
+   */
+  public int getSelfLoopCount() {
+    return selfLoopCount;
+  }
+
+  /**
+   * gets the smallest number of edges leaving a vertex.
+   *
+   * @return the smallest out degree, or 0 if the graph has no verticies.
+   */
+  public int getMinOutDegree() {
+    return minOutDegree;
+  }
+
+  /**
+   * gets the largest number of edges leaving a vertex.
+   *
+   * @return the largest out degree, or 0 if the graph has no verticies.
+   */
+  public int getMaxOutDegree() {
+    return maxOutDegree;
+  }
+
+  /**
+   * gets the smallest number of edges entering a vertex.
+   *
+   * @return the smallest in degree, or 0 if the graph has no verticies.
+   */
+  public int getMinInDegree() {
+    return minInDegree;
+  }
+
+  /**
+   * gets the largest number of edges entering a vertex.
+   *
+   * @return the largest in degree, or 0 if the graph has no verticies.
+   */
+  public int getMaxInDegree() {
+    return maxInDegree;
+  }
+
+  /**
+   * gets the average number of edges leaving a vertex, which is also the average entering one.
+   *
+   * @return the mean degree, or 0 if the graph has no verticies.
+   */
+  public double getMeanDegree() {
+    return vertexCount == 0 ? 0 : (double) edgeCount / vertexCount;
+  }
+}
@@ -0,0 +1,92 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The edges added and removed between two versions of a graph, such as a graph file before and
+ * after it was edited.
+ *
+ * @param <T> The type of each vertex.
+ */
+public final class GraphChanges<T extends Comparable<T>> {
+
+  private final List<Edge<T>> added;
+  private final List<Edge<T>> removed;
+
+  /**
+   * Creates the changes between two graphs.
+   *
+   * @param added The edges only in the newer graph.
+   * @param removed The edges only in the older graph.
+   */
+  private GraphChanges(final List<Edge<T>> added, final List<Edge<T>> removed) {
+    this.added = Collections.unmodifiableList(added);
+    this.removed = Collections.unmodifiableList(removed);
+  }
+
+  /**
+   * Finds the edges added and removed between two graphs, by looking each edge of one graph up in
+   * the other.
+   *
+   * @param previous The older graph.
+   * @param next The newer graph.
+   * @param <T> The type of each vertex.
+   * @return The changes from the older graph to the newer one.
+   */
+  public static <T extends Comparable<T>> GraphChanges<T> between(
+      final Graph<T> previous, final Graph<T> next) {
+    return new GraphChanges<>(missingFrom(next, previous), missingFrom(previous, next));
+  }
+
+  /**
+   * Lists the edges of one graph that another graph does not have.
+   *
+   * @param graph The graph whose edges to list.
+   * @param other The graph to look them up in.
+   * @param <T> The type of each vertex.
+   * @return The edges of the first graph missing from the second, in numerical order.
+   */
+  private static <T extends Comparable<T>> List<Edge<T>> missingFrom(
+      final Graph<T> graph, final Graph<T> other) {
+    final List<Edge<T>> missing = new ArrayList<>();
+
+    for (final T source : graph.getVerticies()) {
+      for (final T destination : graph.getNeighbours(source)) {
+        if (!other.hasEdge(source, destination)) {
+          missing.add(new Edge<>(source, destination));
+        }
+      }
+    }
+
+    return missing;
+  }
+
+  /**
+   * Gets the edges that were added.
+   *
+   * @return An unmodifiable list of the edges only in the newer graph.
+   */
+  public List<Edge<T>> getAdded() {
+    return added;
+  }
+
+  /**
+   * Gets the edges that were removed.
+   *
+   * @return An unmodifiable list of the edges only in the older graph.
+   */
+  public List<Edge<T>> getRemoved() {
+    return removed;
+  }
+
+  /**
+   * Checks if both graphs have the same edges.
+   *
+   * @return True if no edge was added or removed.
+   */
+  public boolean isEmpty() {
+    return added.isEmpty() && removed.isEmpty();
+  }
+}
@@ -0,0 +1,52 @@
+package nz.ac.auckland.se281.datastructures;
+
+/** The optional structures that a graph can build when it is constructed. */
+public enum GraphOption {
+  /**
+   * Index the incoming edges of each vertex, so that predecessor queries such as symmetry and root
+   * checks can merge sorted rows instead of searching every neighbour list.
+   */
+  INDEX_INCOMING,
+
+  /**
+   * Count how many times each edge is given while building the graph, keeping the count as the
+   * edge's weight instead of only recording that the edge exists.
+   */
+  COUNT_MULTIPLICITY,
+
+  /**
+   * Work out an order of the verticies in which neighbours are close together, and visit them in
+   * that order in checks whose result does not depend on the order, such as transitivity. Searches,
+   * listings and counterexamples still follow numerical order.
+   */
+  ORDER_FOR_LOCALITY,
+
+  /**
+   * Keep the rows of destinations, and of sources if they are indexed, in native memory off the
+   * heap, so that the heap and the work of the garbage collector stay small however many edges the
+   * graph has while it is in use. Long rows are then binary searched rather than given hash sets.
+   *
+   * <p>This has two limits. The rows are first laid out on the heap and then copied off it, so
+   * building the graph needs as much heap as without this option. A graph also has no way to
+   * free its native memory, as other threads may still be reading it. The memory is freed once
+   * the graph is unreachable and a garbage collection runs. Until then, graphs replaced by
+   * reloading a file still count towards {@code -XX:MaxDirectMemorySize}. When that limit is
+   * reached, the JVM runs a full collection to free them, and throws an {@link OutOfMemoryError}
+   * if explicit collections are disabled.
+   */
+  OFF_HEAP,
+
+  /**
+   * Bit pack the rows of destinations, and of sources if they are indexed, in blocks that each
+   * only take the bits needed for how far apart their verticies are, unpacking them as they are
+   * read. Graphs whose edges mostly join nearby verticies then take a byte or two per edge. Packed
+   * rows are kept on the heap, even with {@link #OFF_HEAP}, and long rows are binary searched.
+   */
+  PACK_ROWS,
+
+  /**
+   * Hash the verticies and edges with SHA-256, so that results worked out for the graph can be
+   * found again for any graph with the same edges, such as by a cache of results on disk.
+   */
+  FINGERPRINT
+}
@@ -0,0 +1,172 @@
+package nz.ac.auckland.se281.datastructures;
+
+/**
+ * The shape of a graph, found by {@link Graph#getStatistics()} in time linear in its size: how
+ * many verticies, edges and self loops it has, how its degrees are distributed, how many strongly
+ * connected components it splits into, and roughly how much memory it holds.
+ *
+ * <p>Degree histograms group degrees by powers of two. Bucket 0 counts the verticies of degree 0,
+ * and bucket {@code k} counts those with a degree from {@code 2^(k-1)} to {@code 2^k - 1}.
+ */
+public final class GraphStatistics {
+
+  private final int vertexCount;
+  private final int edgeCount;
+  private final int selfLoopCount;
+  private final int componentCount;
+  private final int maxOutDegree;
+  private final int maxInDegree;
+  private final int[] outDegreeHistogram;
+  private final int[] inDegreeHistogram;
+  private final long estimatedBytes;
+
+  /**
+   * creates the statistics of a graph.
+   *
+   * @param vertexCount the number of verticies.
+   * @param edgeCount the number of edges.
+   * @param selfLoopCount the number of verticies with an edge to themselves.
+   * @param componentCount the number of strongly connected components.
+   * @param maxOutDegree the largest out degree.
+   * @param maxInDegree the largest in degree.
+   * @param outDegreeHistogram the number of verticies in each out degree bucket.
+   * @param inDegreeHistogram the number of verticies in each in degree bucket.
+   * @param estimatedBytes the estimated memory held by the graph's indexes.
+   */
+  GraphStatistics(
+      int vertexCount,
+      int edgeCount,
+      int selfLoopCount,
+      int componentCount,
+      int maxOutDegree,
+      int maxInDegree,
+      int[] outDegreeHistogram,
+      int[] inDegreeHistogram,
+      long estimatedBytes) {
+    this.vertexCount = vertexCount;
+    this.edgeCount = edgeCount;
+    this.selfLoopCount = selfLoopCount;
+    this.componentCount = componentCount;
+    this.maxOutDegree = maxOutDegree;
+    this.maxInDegree = maxInDegree;
+    this.outDegreeHistogram = outDegreeHistogram;
+    this.inDegreeHistogram = inDegreeHistogram;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * finds the histogram bucket of a degree.
+   *
+   * @param degree the degree of a vertex.
+   * @return the bucket the degree is counted in.
+   */
+  static int bucketOf(int degree) {
+    return 32 - Integer.numberOfLeadingZeros(degree);
+  }
+
+  /**
+   * describes the degrees counted in a histogram bucket.
+   *
+   * @param bucket the bucket to describe.
+   * @return the degree, or range of degrees, in the bucket, such as "4-7".
+   */
+  public static String describeBucket(int bucket) {
+    if (bucket <= 1) {
+      return String.valueOf(bucket);
+    }
+
+    return (1L << (bucket - 1)) + "-" + ((1L << bucket) - 1);
+  }
+
+  /**
+   * gets the number of verticies in the graph.
+   *
+   * @return the number of verticies.
+   */
+  public int getVertexCount() {
+    return vertexCount;
+  }
+
+  /**
+   * gets the number of edges in the graph.
+   *
+   * @return the number of edges.
+   */
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * gets the number of verticies with an edge to themselves.
+   *
+   * @return the number of self loops.
+   */
+  public int getSelfLoopCount() {
+    return selfLoopCount;
+  }
+
+  /**
+   * gets the number of strongly connected components, where every vertex of a component can reach
+   * every other.
+   *
+   * @return the number of components.
+   */
+  public int getComponentCount() {
+    return componentCount;
+  }
+
+  /**
+   * gets the largest number of edges leaving a vertex.
+   *
+   * @return the largest out degree.
+   */
+  public int getMaxOutDegree() {
+    return maxOutDegree;
+  }
+
+  /**
+   * gets the largest number of edges entering a vertex.
+   *
+   * @return the largest in degree.
+   */
+  public int getMaxInDegree() {
+    return maxInDegree;
+  }
+
+  /**
+   * gets the average number of edges leaving a vertex, which is also the average entering one.
+   *
+   * @return the mean degree, or 0 if the graph has no verticies.
+   */
+  public double getMeanDegree() {
+    return vertexCount == 0 ? 0 : (double) edgeCount / vertexCount;
+  }
+
+  /**
+   * gets the number of verticies in each out degree bucket, up to the last bucket in use.
+   *
+   * @return a copy of the out degree histogram.
+   */
+  public int[] getOutDegreeHistogram() {
+    return outDegreeHistogram.clone();
+  }
+
+  /**
+   * gets the number of verticies in each in degree bucket, up to the last bucket in use.
+   *
+   * @return a copy of the in degree histogram.
+   */
+  public int[] getInDegreeHistogram() {
+    return inDegreeHistogram.clone();
+  }
+
+  /**
+   * gets the estimated memory held by the graph's edge and lookup indexes, not counting the
+   * verticies themselves.
+   *
+   * @return the estimated number of bytes.
+   */
+  public long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+}
@@ -0,0 +1,149 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Runs breadth and depth first traversals of one graph, reporting each step to a {@link
+ * GraphVisitor}. The frontier and visited buffers are sized to the graph once and reused by every
+ * traversal, so repeated traversals allocate nothing.
+ *
+ * <p>A traverser holds mutable buffers, so it must only be used by one thread at a time. Create one
+ * per thread with {@link Graph#newTraverser()}.
+ */
+public class GraphTraverser {
+
+  private final int[] offsets;
+  private final IndexRows targets;
+  private final int[] roots;
+
+  // a vertex is visited when its stamp matches the current traversal's stamp:
+  private final int[] visitedStamps;
+  private int stamp;
+
+  // the BFS queue and the DFS stack of (vertex, next edge) frames, each holding a vertex once:
+  private final int[] frontier;
+  private final int[] nextEdges;
+
+  /**
+   * Creates a traverser for a graph.
+   *
+   * @param offsets where each vertex's row of destinations starts.
+   * @param targets the sorted rows of destinations.
+   * @param roots the indices of the verticies to traverse from, in order.
+   */
+  GraphTraverser(int[] offsets, IndexRows targets, int[] roots) {
+    this.offsets = offsets;
+    this.targets = targets;
+    this.roots = roots;
+    this.visitedStamps = new int[offsets.length - 1];
+    this.stamp = 0;
+    this.frontier = new int[offsets.length - 1];
+    this.nextEdges = new int[offsets.length - 1];
+  }
+
+  /**
+   * Traverses the graph breadth first from each root in turn.
+   *
+   * @param visitor the visitor to report each step to.
+   */
+  public void breadthFirst(GraphVisitor visitor) {
+    startTraversal();
+
+    for (int root : roots) {
+      if (isVisited(root)) {
+        continue;
+      }
+
+      // the queue is the front of the frontier array, as each vertex is queued at most once:
+      int head = 0;
+      int tail = 0;
+      visitedStamps[root] = stamp;
+      frontier[tail++] = root;
+
+      while (head < tail) {
+        int current = frontier[head++];
+        visitor.onDiscover(current);
+
+        for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+          int neighbour = targets.get(i);
+          visitor.onEdge(current, neighbour);
+
+          if (!isVisited(neighbour)) {
+            visitedStamps[neighbour] = stamp;
+            frontier[tail++] = neighbour;
+          }
+        }
+
+        visitor.onFinish(current);
+      }
+    }
+  }
+
+  /**
+   * Traverses the graph depth first from each root in turn.
+   *
+   * @param visitor the visitor to report each step to.
+   */
+  public void depthFirst(GraphVisitor visitor) {
+    startTraversal();
+
+    for (int root : roots) {
+      if (isVisited(root)) {
+        continue;
+      }
+
+      int depth = 0;
+      visitedStamps[root] = stamp;
+      visitor.onDiscover(root);
+      frontier[depth] = root;
+      nextEdges[depth] = offsets[root];
+      depth++;
+
+      while (depth > 0) {
+        int current = frontier[depth - 1];
+        int edge = nextEdges[depth - 1];
+
+        // the vertex finishes once all of its edges have been followed:
+        if (edge == offsets[current + 1]) {
+          visitor.onFinish(current);
+          depth--;
+          continue;
+        }
+
+        nextEdges[depth - 1] = edge + 1;
+        int neighbour = targets.get(edge);
+        visitor.onEdge(current, neighbour);
+
+        // descend into the neighbour before following the vertex's next edge:
+        if (!isVisited(neighbour)) {
+          visitedStamps[neighbour] = stamp;
+          visitor.onDiscover(neighbour);
+          frontier[depth] = neighbour;
+          nextEdges[depth] = offsets[neighbour];
+          depth++;
+        }
+      }
+    }
+  }
+
+  /** Forgets the verticies visited by the previous traversal. */
+  private void startTraversal() {
+    stamp++;
+
+    // once the stamps wrap around, old stamps could match again, so clear them:
+    if (stamp == 0) {
+      Arrays.fill(visitedStamps, 0);
+      stamp = 1;
+    }
+  }
+
+  /**
+   * Checks whether a vertex has been visited by the current traversal.
+   *
+   * @param vertex the index of the vertex.
+   * @return whether the vertex has been visited.
+   */
+  private boolean isVisited(int vertex) {
+    return visitedStamps[vertex] == stamp;
+  }
+}
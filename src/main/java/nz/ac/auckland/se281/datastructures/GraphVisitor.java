@@ -0,0 +1,34 @@
+package nz.ac.auckland.se281.datastructures;
+
+/**
+ * Receives the events of a traversal by a {@link GraphTraverser}. Verticies are identified by their
+ * index in {@link Graph#getVerticies()}, so no objects are created to report an event. Every method
+ * does nothing unless overridden.
+ */
+public interface GraphVisitor {
+
+  /**
+   * Called when the traversal visits a vertex, in the same order as the matching search of {@link
+   * Graph}.
+   *
+   * @param vertex the index of the vertex.
+   */
+  default void onDiscover(int vertex) {}
+
+  /**
+   * Called for each edge the traversal follows out of a visited vertex, whether or not the
+   * destination has already been visited.
+   *
+   * @param source the index of the vertex the edge leaves.
+   * @param destination the index of the vertex the edge enters.
+   */
+  default void onEdge(int source, int destination) {}
+
+  /**
+   * Called once every edge out of a vertex has been followed. In a depth first traversal, this is
+   * after every vertex reached through it has also finished.
+   *
+   * @param vertex the index of the vertex.
+   */
+  default void onFinish(int vertex) {}
+}
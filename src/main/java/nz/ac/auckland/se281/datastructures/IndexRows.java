@@ -0,0 +1,257 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * The rows of a graph in compressed sparse row form, such as each vertex's destinations, as one
+ * run of vertex indices. The indices are held in one of three ways: an array on the heap, any
+ * other buffer such as one off the heap or mapped from a file, or bit packed.
+ *
+ * <p>Packed indices are split into blocks of {@link #BLOCK_SIZE}, and each block keeps its
+ * smallest index and then how far each index is past it, in just enough bits for the block's
+ * largest index. Rows are sorted and mostly join nearby verticies, so a block's indices are close
+ * together and take a byte or two each. A block of {@code width} bit values takes exactly {@code
+ * width} words, so any index is unpacked with a few shifts and no search, and rows can still be
+ * read from any position and binary searched.
+ */
+final class IndexRows {
+
+  private static final int BLOCK_SHIFT = 6;
+  private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+  private final int size;
+
+  // the indices on the heap, or null if they are held another way:
+  private final int[] array;
+
+  // the indices in any other buffer, or null if they are held another way:
+  private final IntBuffer buffer;
+
+  // the smallest index of each block, where the block's packed values start in the words, and
+  // the packed values, which are followed by two spare words so reads never run off the end; or
+  // null if the indices are not packed:
+  private final int[] bases;
+  private final int[] wordStarts;
+  private final long[] words;
+
+  /**
+   * creates rows held in exactly one of the given ways.
+   *
+   * @param size the number of indices.
+   * @param array the indices on the heap, or null.
+   * @param buffer the indices in a buffer, or null.
+   * @param bases the smallest index of each block, or null.
+   * @param wordStarts where each block starts in the words, followed by the number of words.
+   * @param words the packed values, or null.
+   */
+  private IndexRows(
+      int size, int[] array, IntBuffer buffer, int[] bases, int[] wordStarts, long[] words) {
+    this.size = size;
+    this.array = array;
+    this.buffer = buffer;
+    this.bases = bases;
+    this.wordStarts = wordStarts;
+    this.words = words;
+  }
+
+  /**
+   * keeps indices from a buffer's position up to its limit, packing them or copying them off the
+   * heap if asked. Native memory off the heap is only released when the rows are collected, as
+   * described in {@link GraphOption#OFF_HEAP}, and indices that are already off the heap are kept
+   * where they are.
+   *
+   * @param values the indices to keep.
+   * @param offHeap whether to copy indices on the heap off it.
+   * @param packed whether to bit pack the indices, which takes precedence over keeping them off
+   *     the heap.
+   * @return the rows.
+   * @throws IllegalArgumentException if the indices are too many for one native buffer.
+   */
+  static IndexRows of(IntBuffer values, boolean offHeap, boolean packed) {
+    IntBuffer rows = values.slice();
+
+    if (packed) {
+      return pack(rows);
+    }
+
+    boolean wholeArray = rows.hasArray() && rows.arrayOffset() == 0;
+
+    if (wholeArray && !offHeap) {
+      return new IndexRows(rows.capacity(), rows.array(), null, null, null, null);
+    }
+
+    if (!wholeArray || !offHeap) {
+      return new IndexRows(rows.capacity(), null, rows, null, null, null);
+    }
+
+    if (rows.capacity() > Integer.MAX_VALUE / Integer.BYTES) {
+      throw new IllegalArgumentException("Too many edges to keep off the heap");
+    }
+
+    IntBuffer direct =
+        ByteBuffer.allocateDirect(rows.capacity() * Integer.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asIntBuffer();
+    direct.put(0, rows.array(), 0, rows.capacity());
+
+    return new IndexRows(rows.capacity(), null, direct, null, null, null);
+  }
+
+  /**
+   * bit packs indices in blocks, each in just enough bits for its spread of values.
+   *
+   * @param values the indices to pack.
+   * @return the packed rows.
+   */
+  private static IndexRows pack(IntBuffer values) {
+    int size = values.capacity();
+    int blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+    int[] bases = new int[blocks];
+    int[] wordStarts = new int[blocks + 1];
+
+    // find the smallest index of each block and the width of its spread:
+    for (int block = 0; block < blocks; block++) {
+      int from = block << BLOCK_SHIFT;
+      int to = Math.min(from + BLOCK_SIZE, size);
+      int min = Integer.MAX_VALUE;
+      int max = 0;
+
+      for (int i = from; i < to; i++) {
+        min = Math.min(min, values.get(i));
+        max = Math.max(max, values.get(i));
+      }
+
+      int width = Integer.SIZE - Integer.numberOfLeadingZeros(max - min);
+      bases[block] = min;
+      wordStarts[block + 1] = wordStarts[block] + width;
+    }
+
+    long[] words = new long[wordStarts[blocks] + 2];
+
+    for (int i = 0; i < size; i++) {
+      int block = i >>> BLOCK_SHIFT;
+      int width = wordStarts[block + 1] - wordStarts[block];
+      int bit = (i & (BLOCK_SIZE - 1)) * width;
+      int word = wordStarts[block] + (bit >>> 6);
+      long value = values.get(i) - bases[block];
+
+      // a value that crosses into the next word puts its high bits at the start of it:
+      words[word] |= value << bit;
+      words[word + 1] |= (value >>> 1) >>> (63 - (bit & 63));
+    }
+
+    return new IndexRows(size, null, null, bases, wordStarts, words);
+  }
+
+  /**
+   * gets the index at a position.
+   *
+   * @param position the position, from zero up to the number of indices.
+   * @return the index.
+   */
+  int get(int position) {
+    if (array != null) {
+      return array[position];
+    }
+
+    if (words == null) {
+      return buffer.get(position);
+    }
+
+    int block = position >>> BLOCK_SHIFT;
+    int start = wordStarts[block];
+    int width = wordStarts[block + 1] - start;
+    int bit = (position & (BLOCK_SIZE - 1)) * width;
+    int word = start + (bit >>> 6);
+
+    // join the bits of the value from both words it may cross, without branching on whether it
+    // does, as shifting the next word by one and then the rest is never a shift by 64:
+    long value = (words[word] >>> bit) | ((words[word + 1] << 1) << (63 - (bit & 63)));
+
+    return bases[block] + (int) (value & ((1L << width) - 1));
+  }
+
+  /**
+   * gets the number of indices in every row together.
+   *
+   * @return the number of indices.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * binary searches one sorted row for an index, handing rows on the heap to {@link
+   * Arrays#binarySearch(int[], int, int, int)}.
+   *
+   * @param from the first position of the row.
+   * @param to the position after the last one of the row.
+   * @param key the index to find.
+   * @return the position of the index, or a negative number if the row does not hold it.
+   */
+  int search(int from, int to, int key) {
+    if (array != null) {
+      return Arrays.binarySearch(array, from, to, key);
+    }
+
+    int low = from;
+    int high = to - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int value = get(middle);
+
+      if (value < key) {
+        low = middle + 1;
+      } else if (value > key) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+
+    return -(low + 1);
+  }
+
+  /**
+   * gets one row as a read only buffer, which is a view of the row unless the rows are packed, in
+   * which case the row is unpacked into a new buffer.
+   *
+   * @param from the first position of the row.
+   * @param length the number of indices in the row.
+   * @return the buffer over the row.
+   */
+  IntBuffer slice(int from, int length) {
+    if (array != null) {
+      return IntBuffer.wrap(array, from, length).slice().asReadOnlyBuffer();
+    }
+
+    if (words == null) {
+      return buffer.slice(from, length).asReadOnlyBuffer();
+    }
+
+    int[] row = new int[length];
+
+    for (int i = 0; i < length; i++) {
+      row[i] = get(from + i);
+    }
+
+    return IntBuffer.wrap(row).asReadOnlyBuffer();
+  }
+
+  /**
+   * estimates the memory held by the rows, counting a 16 byte header for each array or buffer.
+   *
+   * @return the estimated number of bytes.
+   */
+  long estimateBytes() {
+    if (words == null) {
+      return 16 + 4L * size;
+    }
+
+    return 3 * 16 + 4L * bases.length + 4L * wordStarts.length + 8L * words.length;
+  }
+}
@@ -0,0 +1,93 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A queue of primitive ints, stored in a growable circular array so that no object is allocated
+ * per element.
+ */
+public class IntQueue {
+
+  private int[] elements;
+  private int head; // the position of the first element
+  private int size;
+
+  /** creates a new empty queue. */
+  public IntQueue() {
+    this.elements = new int[16];
+    this.head = 0;
+    this.size = 0;
+  }
+
+  /**
+   * adds the passed in value to the end of the queue.
+   *
+   * @param value the value to be added to the queue.
+   */
+  public void enqueue(int value) {
+    if (size == elements.length) {
+      // unroll the circular array into a larger one:
+      int[] larger = new int[elements.length * 2];
+      int firstPart = elements.length - head;
+      System.arraycopy(elements, head, larger, 0, firstPart);
+      System.arraycopy(elements, 0, larger, firstPart, head);
+      elements = larger;
+      head = 0;
+    }
+
+    elements[(head + size) % elements.length] = value;
+    size++;
+  }
+
+  /**
+   * removes the first value from the queue and returns it.
+   *
+   * @return the first value of the queue.
+   * @throws IllegalStateException if the queue is empty.
+   */
+  public int dequeue() {
+    if (isEmpty()) {
+      throw new IllegalStateException("Queue is empty");
+    }
+
+    int value = elements[head];
+    head = (head + 1) % elements.length;
+    size--;
+    return value;
+  }
+
+  /**
+   * checks if the queue is empty.
+   *
+   * @return a boolean indicating whether the queue is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * returns the number of values in the queue.
+   *
+   * @return the number of values in the queue.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /** removes every value from the queue, keeping its storage for reuse. */
+  public void clear() {
+    head = 0;
+    size = 0;
+  }
+
+  @Override
+  public String toString() {
+    int[] values = new int[size];
+
+    for (int i = 0; i < size; i++) {
+      values[i] = elements[(head + i) % elements.length];
+    }
+
+    return Arrays.toString(values);
+  }
+}
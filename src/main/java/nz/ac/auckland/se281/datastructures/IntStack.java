@@ -0,0 +1,75 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * A stack of primitive ints, stored in a growable array so that no object is allocated per element.
+ */
+public class IntStack {
+
+  private int[] elements;
+  private int size;
+
+  /** creates a new empty stack. */
+  public IntStack() {
+    this.elements = new int[16];
+    this.size = 0;
+  }
+
+  /**
+   * adds the passed in value to the top of the stack.
+   *
+   * @param value the value to be added to the top of the stack.
+   */
+  public void push(int value) {
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, elements.length * 2);
+    }
+
+    elements[size] = value;
+    size++;
+  }
+
+  /**
+   * removes the top value from the stack and returns it.
+   *
+   * @return the top value of the stack.
+   * @throws IllegalStateException if the stack is empty.
+   */
+  public int pop() {
+    if (isEmpty()) {
+      throw new IllegalStateException("Stack is empty");
+    }
+
+    size--;
+    return elements[size];
+  }
+
+  /**
+   * checks if the stack is empty.
+   *
+   * @return a boolean indicating whether the stack is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * returns the number of values in the stack.
+   *
+   * @return the number of values in the stack.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /** removes every value from the stack, keeping its storage for reuse. */
+  public void clear() {
+    size = 0;
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(Arrays.copyOf(elements, size));
+  }
+}
@@ -0,0 +1,144 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Orders the verticies of a graph so that verticies next to each other in the order are close to
+ * each other in the graph, using the reverse Cuthill-McKee ordering.
+ *
+ * <p>Each component is searched breadth first from one of its verticies of least degree, queueing
+ * the unvisited destinations of each vertex from lowest to highest degree, and the whole order is
+ * then reversed. Verticies visited one after another then mostly share their neighbours, so a
+ * pass that reads the rows of each vertex's neighbours finds them already in the cache.
+ */
+final class LocalityOrder {
+
+  private static final int INSERTION_SORT_LIMIT = 16;
+
+  /** Prevents instances, as this class only groups static operations. */
+  private LocalityOrder() {}
+
+  /**
+   * finds the reverse Cuthill-McKee order of a graph's verticies.
+   *
+   * @param offsets where each vertex's row of destinations starts, followed by the edge count.
+   * @param targets the rows of destinations.
+   * @return the index of each vertex in the order to visit them.
+   */
+  static int[] reverseCuthillMcKee(int[] offsets, IntBuffer targets) {
+    int vertexCount = offsets.length - 1;
+    int[] byDegree = sortByDegree(offsets, vertexCount);
+    boolean[] visited = new boolean[vertexCount];
+    int[] order = new int[vertexCount];
+    int tail = 0;
+
+    // start from the lowest degree vertex of each component in turn, using the order as a queue:
+    for (int start : byDegree) {
+      if (visited[start]) {
+        continue;
+      }
+
+      visited[start] = true;
+      order[tail++] = start;
+
+      for (int head = tail - 1; head < tail; head++) {
+        int vertex = order[head];
+        int first = tail;
+
+        for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+          int target = targets.get(i);
+
+          if (!visited[target]) {
+            visited[target] = true;
+            order[tail++] = target;
+          }
+        }
+
+        sortRange(order, first, tail, offsets);
+      }
+    }
+
+    for (int i = 0, j = vertexCount - 1; i < j; i++, j--) {
+      int swap = order[i];
+      order[i] = order[j];
+      order[j] = swap;
+    }
+
+    return order;
+  }
+
+  /**
+   * sorts every vertex by its out degree with a counting sort, keeping ties in index order.
+   *
+   * @param offsets where each vertex's row of destinations starts, followed by the edge count.
+   * @param vertexCount the number of verticies.
+   * @return the indices of the verticies from lowest to highest degree.
+   */
+  private static int[] sortByDegree(int[] offsets, int vertexCount) {
+    int maxDegree = 0;
+
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      maxDegree = Math.max(maxDegree, offsets[vertex + 1] - offsets[vertex]);
+    }
+
+    int[] starts = new int[maxDegree + 2];
+
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      starts[offsets[vertex + 1] - offsets[vertex] + 1]++;
+    }
+
+    for (int degree = 1; degree < starts.length; degree++) {
+      starts[degree] += starts[degree - 1];
+    }
+
+    int[] sorted = new int[vertexCount];
+
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      sorted[starts[offsets[vertex + 1] - offsets[vertex]]++] = vertex;
+    }
+
+    return sorted;
+  }
+
+  /**
+   * sorts part of the order by out degree, keeping ties in the order they were queued. Short runs
+   * use an insertion sort, and longer ones are packed into keys and sorted together.
+   *
+   * @param order the order being built.
+   * @param from the first position to sort.
+   * @param to the position after the last one to sort.
+   * @param offsets where each vertex's row of destinations starts, followed by the edge count.
+   */
+  private static void sortRange(int[] order, int from, int to, int[] offsets) {
+    if (to - from > INSERTION_SORT_LIMIT) {
+      // rows are sorted, so a run was queued in index order and ties can be broken by index:
+      long[] keys = new long[to - from];
+
+      for (int i = from; i < to; i++) {
+        keys[i - from] = (long) (offsets[order[i] + 1] - offsets[order[i]]) << 32 | order[i];
+      }
+
+      Arrays.sort(keys);
+
+      for (int i = from; i < to; i++) {
+        order[i] = (int) keys[i - from];
+      }
+
+      return;
+    }
+
+    for (int i = from + 1; i < to; i++) {
+      int vertex = order[i];
+      int degree = offsets[vertex + 1] - offsets[vertex];
+      int j = i - 1;
+
+      while (j >= from && offsets[order[j] + 1] - offsets[order[j]] > degree) {
+        order[j + 1] = order[j];
+        j--;
+      }
+
+      order[j + 1] = vertex;
+    }
+  }
+}
@@ -0,0 +1,185 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds every vertex that can be reached from a set of roots, searching depth first from many
+ * verticies at once on the common fork/join pool.
+ *
+ * <p>Each task follows edges from a stack of its own, marking verticies in a visited bitmap shared
+ * by every task with a compare and set, so that only the task that marks a vertex goes on to
+ * search from it. When a task's stack grows long it forks off half of it as a new task, which an
+ * idle worker can steal. The order verticies are reached in depends on how the tasks are run, but
+ * the set that is reached does not.
+ */
+final class ParallelReachability {
+
+  // graphs with fewer edges than this are searched on the calling thread, as forking would cost
+  // more than it saves:
+  private static final int PARALLEL_EDGES = 1 << 15;
+
+  // a task hands half of its stack to a new task once it holds this many verticies:
+  private static final int SPLIT_SIZE = 1 << 8;
+
+  /** Prevents instances, as this class only groups static operations. */
+  private ParallelReachability() {}
+
+  /**
+   * Finds the verticies reachable from the roots.
+   *
+   * @param offsets Where each vertex's row of destinations starts, followed by the edge count.
+   * @param targets The rows of destinations.
+   * @param roots The indices of the verticies to search from.
+   * @return The indices of the reachable verticies, including the roots, in increasing order.
+   */
+  static int[] search(final int[] offsets, final IndexRows targets, final int[] roots) {
+    final int vertexCount = offsets.length - 1;
+    final AtomicLongArray visited = new AtomicLongArray((vertexCount + 63) >>> 6);
+    final int[] stack = new int[Math.max(roots.length, 1)];
+    int depth = 0;
+
+    for (final int root : roots) {
+      if (mark(visited, root)) {
+        stack[depth++] = root;
+      }
+    }
+
+    final boolean parallel = targets.size() >= PARALLEL_EDGES;
+    final Search search = new Search(offsets, targets, visited, stack, depth, parallel);
+
+    if (parallel) {
+      ForkJoinPool.commonPool().invoke(search);
+    } else {
+      search.invoke();
+    }
+
+    // read the bitmap back in index order, which is also numerical order:
+    int count = 0;
+
+    for (int word = 0; word < visited.length(); word++) {
+      count += Long.bitCount(visited.get(word));
+    }
+
+    final int[] reached = new int[count];
+    int next = 0;
+
+    for (int word = 0; word < visited.length(); word++) {
+      for (long bits = visited.get(word); bits != 0; bits &= bits - 1) {
+        reached[next++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+      }
+    }
+
+    return reached;
+  }
+
+  /**
+   * Marks a vertex as visited, unless another task already has.
+   *
+   * @param visited The visited bitmap.
+   * @param vertex The index of the vertex.
+   * @return Whether this call marked the vertex, so the caller should search from it.
+   */
+  private static boolean mark(final AtomicLongArray visited, final int vertex) {
+    final int word = vertex >>> 6;
+    final long bit = 1L << vertex;
+    long seen = visited.get(word);
+
+    while ((seen & bit) == 0) {
+      final long witness = visited.compareAndExchange(word, seen, seen | bit);
+
+      if (witness == seen) {
+        return true;
+      }
+
+      seen = witness;
+    }
+
+    return false;
+  }
+
+  /** One task of the search, which follows edges from the verticies on its own stack. */
+  private static final class Search extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] offsets;
+    private final IndexRows targets;
+    private final AtomicLongArray visited;
+    private final boolean parallel;
+    private int[] stack;
+    private int depth;
+
+    /**
+     * Creates a task that searches from the verticies on a stack, which it takes over.
+     *
+     * @param offsets Where each vertex's row of destinations starts.
+     * @param targets The rows of destinations.
+     * @param visited The visited bitmap shared by every task.
+     * @param stack The marked verticies to search from.
+     * @param depth How many verticies are on the stack.
+     * @param parallel Whether the task may fork off new tasks.
+     */
+    private Search(
+        final int[] offsets,
+        final IndexRows targets,
+        final AtomicLongArray visited,
+        final int[] stack,
+        final int depth,
+        final boolean parallel) {
+      this.offsets = offsets;
+      this.targets = targets;
+      this.visited = visited;
+      this.stack = stack;
+      this.depth = depth;
+      this.parallel = parallel;
+    }
+
+    @Override
+    protected void compute() {
+      final List<ForkJoinTask<Void>> forked = new ArrayList<>();
+
+      while (depth > 0) {
+        final int vertex = stack[--depth];
+
+        for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+          final int target = targets.get(i);
+
+          if (mark(visited, target)) {
+            push(target);
+          }
+        }
+
+        // hand the bottom half of a long stack, the verticies found first, to another worker:
+        if (parallel && depth >= SPLIT_SIZE) {
+          final int half = depth / 2;
+          final int[] shared = Arrays.copyOf(stack, half);
+          System.arraycopy(stack, half, stack, 0, depth - half);
+          depth -= half;
+          forked.add(new Search(offsets, targets, visited, shared, half, true).fork());
+        }
+      }
+
+      for (final ForkJoinTask<Void> task : forked) {
+        task.join();
+      }
+    }
+
+    /**
+     * Pushes a vertex onto the task's stack, growing it if it is full.
+     *
+     * @param vertex The index of the vertex.
+     */
+    private void push(final int vertex) {
+      if (depth == stack.length) {
+        stack = Arrays.copyOf(stack, stack.length * 2);
+      }
+
+      stack[depth++] = vertex;
+    }
+  }
+}
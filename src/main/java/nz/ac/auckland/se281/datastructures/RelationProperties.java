@@ -0,0 +1,336 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.nio.IntBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The properties of a graph as a relation, kept as counts of the edges that decide them so that
+ * they can be brought up to date from the edges that changed instead of checking the whole graph
+ * again.
+ *
+ * <p>Reflexivity, symmetry and antisymmetry only depend on each edge and the edge going back the
+ * other way, so only the pairs of verticies an added or removed edge joins are counted again.
+ * Transitivity is only checked around the changed edges while the graph stays transitive, as any
+ * new path of two edges without a shortcut must then use an added edge or have lost a removed
+ * shortcut. Once the graph is not transitive, every edit checks it in full.
+ */
+public final class RelationProperties {
+
+  private final int vertexCount;
+  private final int selfLoopCount;
+  private final int oneWayCount;
+  private final int twoWayCount;
+  private final boolean transitive;
+
+  /**
+   * Creates the properties of a graph from its counts.
+   *
+   * @param vertexCount The number of verticies.
+   * @param selfLoopCount The number of edges from a vertex to itself.
+   * @param oneWayCount The number of edges between different verticies with no edge back.
+   * @param twoWayCount The number of edges between different verticies with an edge back.
+   * @param transitive Whether the graph is transitive.
+   */
+  private RelationProperties(
+      final int vertexCount,
+      final int selfLoopCount,
+      final int oneWayCount,
+      final int twoWayCount,
+      final boolean transitive) {
+    this.vertexCount = vertexCount;
+    this.selfLoopCount = selfLoopCount;
+    this.oneWayCount = oneWayCount;
+    this.twoWayCount = twoWayCount;
+    this.transitive = transitive;
+  }
+
+  /**
+   * Counts the properties of a whole graph.
+   *
+   * @param graph The graph to check.
+   * @param <T> The type of each vertex.
+   * @return The properties of the graph.
+   */
+  public static <T extends Comparable<T>> RelationProperties of(final Graph<T> graph) {
+    int selfLoopCount = 0;
+    int oneWayCount = 0;
+    int twoWayCount = 0;
+
+    for (final T source : graph.getVerticies()) {
+      for (final T destination : graph.getNeighbours(source)) {
+        if (source.equals(destination)) {
+          selfLoopCount++;
+        } else if (graph.hasEdge(destination, source)) {
+          twoWayCount++;
+        } else {
+          oneWayCount++;
+        }
+      }
+    }
+
+    return new RelationProperties(
+        graph.getVerticies().size(),
+        selfLoopCount,
+        oneWayCount,
+        twoWayCount,
+        graph.isTransitive());
+  }
+
+  /**
+   * Brings the properties up to date after the graph was edited, only looking at the edges that
+   * changed and their neighbours while the graph stays transitive.
+   *
+   * @param previous The graph these properties are for.
+   * @param next The edited graph, which must index its incoming edges.
+   * @param changes The edges added and removed from the previous graph to the edited one.
+   * @param <T> The type of each vertex.
+   * @return The properties of the edited graph.
+   */
+  public <T extends Comparable<T>> RelationProperties update(
+      final Graph<T> previous, final Graph<T> next, final GraphChanges<T> changes) {
+    int selfLoops = selfLoopCount + countSelfLoops(changes.getAdded());
+    selfLoops -= countSelfLoops(changes.getRemoved());
+    int oneWay = oneWayCount;
+    int twoWay = twoWayCount;
+
+    // count each pair of different verticies joined by a changed edge again, in both graphs:
+    for (final Edge<T> pair : findPairs(changes)) {
+      final T a = pair.getSource();
+      final T b = pair.getDestination();
+      oneWay += countOneWay(next, a, b) - countOneWay(previous, a, b);
+      twoWay += countTwoWay(next, a, b) - countTwoWay(previous, a, b);
+    }
+
+    final boolean isTransitive =
+        transitive ? isStillTransitive(next, changes) : next.isTransitive();
+
+    return new RelationProperties(
+        next.getVerticies().size(), selfLoops, oneWay, twoWay, isTransitive);
+  }
+
+  /**
+   * Counts the edges from a vertex to itself.
+   *
+   * @param edges The edges to count.
+   * @param <T> The type of each vertex.
+   * @return The number of self loops.
+   */
+  private static <T extends Comparable<T>> int countSelfLoops(final List<Edge<T>> edges) {
+    int count = 0;
+
+    for (final Edge<T> edge : edges) {
+      if (edge.getSource().equals(edge.getDestination())) {
+        count++;
+      }
+    }
+
+    return count;
+  }
+
+  /**
+   * Finds each pair of different verticies that a changed edge joins, in either direction.
+   *
+   * @param changes The edges added and removed.
+   * @param <T> The type of each vertex.
+   * @return The pairs, each as an edge from the lower vertex to the higher one.
+   */
+  private static <T extends Comparable<T>> Set<Edge<T>> findPairs(final GraphChanges<T> changes) {
+    final Set<Edge<T>> pairs = new HashSet<>();
+
+    for (final List<Edge<T>> edges : List.of(changes.getAdded(), changes.getRemoved())) {
+      for (final Edge<T> edge : edges) {
+        final T source = edge.getSource();
+        final T destination = edge.getDestination();
+        final int order = source.compareTo(destination);
+
+        if (order < 0) {
+          pairs.add(edge);
+        } else if (order > 0) {
+          pairs.add(new Edge<>(destination, source));
+        }
+      }
+    }
+
+    return pairs;
+  }
+
+  /**
+   * Counts the edges between two different verticies that have no edge going back.
+   *
+   * @param graph The graph to look in.
+   * @param a One vertex.
+   * @param b The other vertex.
+   * @param <T> The type of each vertex.
+   * @return 1 if there is an edge one way only, otherwise 0.
+   */
+  private static <T extends Comparable<T>> int countOneWay(
+      final Graph<T> graph, final T a, final T b) {
+    return graph.hasEdge(a, b) != graph.hasEdge(b, a) ? 1 : 0;
+  }
+
+  /**
+   * Counts the edges between two different verticies that have an edge going back.
+   *
+   * @param graph The graph to look in.
+   * @param a One vertex.
+   * @param b The other vertex.
+   * @param <T> The type of each vertex.
+   * @return 2 if there are edges both ways, otherwise 0.
+   */
+  private static <T extends Comparable<T>> int countTwoWay(
+      final Graph<T> graph, final T a, final T b) {
+    return graph.hasEdge(a, b) && graph.hasEdge(b, a) ? 2 : 0;
+  }
+
+  /**
+   * Checks that a graph that was transitive before some edges changed is still transitive, by only
+   * checking the paths of two edges that use an added edge or skip over a removed one.
+   *
+   * @param next The edited graph, which must index its incoming edges.
+   * @param changes The edges added and removed.
+   * @param <T> The type of each vertex.
+   * @return Whether the edited graph is transitive.
+   */
+  private static <T extends Comparable<T>> boolean isStillTransitive(
+      final Graph<T> next, final GraphChanges<T> changes) {
+    final List<T> verticies = next.getVerticies();
+
+    for (final Edge<T> edge : changes.getAdded()) {
+      final T source = edge.getSource();
+      final T destination = edge.getDestination();
+
+      // every path that carries on from the new edge needs a shortcut from its source:
+      for (final T after : next.getNeighbours(destination)) {
+        if (!next.hasEdge(source, after)) {
+          return false;
+        }
+      }
+
+      // and every path that leads into the new edge needs a shortcut to its destination:
+      final IntBuffer before = next.getPredecessorIndices(next.getIndex(source));
+
+      for (int i = 0; i < before.limit(); i++) {
+        if (!next.hasEdge(verticies.get(before.get(i)), destination)) {
+          return false;
+        }
+      }
+    }
+
+    for (final Edge<T> edge : changes.getRemoved()) {
+      final T source = edge.getSource();
+      final T destination = edge.getDestination();
+
+      // a removed edge may have been the shortcut of a path that is still there:
+      for (final T middle : next.getNeighbours(source)) {
+        if (next.hasEdge(middle, destination)) {
+          return false;
+        }
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks if every vertex has an edge to itself.
+   *
+   * @return True if the graph is reflexive.
+   */
+  public boolean isReflexive() {
+    return selfLoopCount == vertexCount;
+  }
+
+  /**
+   * Checks if every edge has an edge going back the other way.
+   *
+   * @return True if the graph is symmetric.
+   */
+  public boolean isSymmetric() {
+    return oneWayCount == 0;
+  }
+
+  /**
+   * Checks if no edge between two different verticies has an edge going back the other way.
+   *
+   * @return True if the graph is antisymmetric.
+   */
+  public boolean isAntiSymmetric() {
+    return twoWayCount == 0;
+  }
+
+  /**
+   * Checks if every path of two edges has an edge going straight from its start to its end.
+   *
+   * @return True if the graph is transitive.
+   */
+  public boolean isTransitive() {
+    return transitive;
+  }
+
+  /**
+   * Checks if the graph is reflexive, symmetric and transitive.
+   *
+   * @return True if the graph is an equivalence relation.
+   */
+  public boolean isEquivalence() {
+    return isReflexive() && isSymmetric() && isTransitive();
+  }
+
+  /**
+   * Checks if other properties were counted the same, so that properties brought up to date can
+   * be compared with those counted from the whole graph.
+   *
+   * @param other The object to compare with.
+   * @return True if the other object is properties with the same counts.
+   */
+  @Override
+  public boolean equals(final Object other) {
+    if (this == other) {
+      return true;
+    }
+
+    if (!(other instanceof RelationProperties)) {
+      return false;
+    }
+
+    final RelationProperties properties = (RelationProperties) other;
+    return vertexCount == properties.vertexCount
+        && selfLoopCount == properties.selfLoopCount
+        && oneWayCount == properties.oneWayCount
+        && twoWayCount == properties.twoWayCount
+        && transitive == properties.transitive;
+  }
+
+  /**
+   * Hashes the counts, consistently with {@link #equals(Object)}.
+   *
+   * @return The hash code of the properties.
+   */
+  @Override
+  public int hashCode() {
+    return Objects.hash(vertexCount, selfLoopCount, oneWayCount, twoWayCount, transitive);
+  }
+
+  /**
+   * Gets the counts, for messages about properties that differ.
+   *
+   * @return The counts as a string.
+   */
+  @Override
+  public String toString() {
+    return "RelationProperties[verticies="
+        + vertexCount
+        + ", selfLoops="
+        + selfLoopCount
+        + ", oneWay="
+        + oneWayCount
+        + ", twoWay="
+        + twoWayCount
+        + ", transitive="
+        + transitive
+        + "]";
+  }
+}
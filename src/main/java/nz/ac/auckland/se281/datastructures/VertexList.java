@@ -0,0 +1,30 @@
+package nz.ac.auckland.se281.datastructures;
+
+import java.util.List;
+
+/**
+ * A list of verticies kept in an encoded form, such as the bytes of their names, that can read the
+ * number a vertex stands for and match a vertex without creating it. A graph built around one only
+ * creates a vertex when it is handed out, such as to be printed, and never to look one up.
+ *
+ * @param <T> The type of each vertex.
+ */
+public interface VertexList<T> extends List<T> {
+
+  /**
+   * Gets the number the vertex at a position stands for.
+   *
+   * @param index the position of the vertex.
+   * @return the number of the vertex.
+   */
+  int getNumber(int index);
+
+  /**
+   * Checks whether the vertex at a position is equal to the given one.
+   *
+   * @param index the position of the vertex.
+   * @param vertex the vertex to compare it with.
+   * @return whether {@code get(index).equals(vertex)} would be true.
+   */
+  boolean isAt(int index, Object vertex);
+}
@@ -0,0 +1,697 @@
+package nz.ac.auckland.se281.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.Set;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphOption;
+import nz.ac.auckland.se281.datastructures.VertexList;
+import nz.ac.auckland.se281.metrics.GraphMetrics;
+
+/**
+ * Builds graphs too large to hold in memory into files of sorted rows, and opens them again by
+ * mapping the rows into memory instead of reading them.
+ *
+ * <p>A DOT file is read twice, a window at a time. The first pass only names the verticies, so
+ * that they can be ranked numerically. The second pass packs each edge into a key that sorts by
+ * source and then destination, and each time a run of keys fills up it is sorted and spilled to a
+ * temporary file. The runs are then merged into one sorted stream, dropping repeated edges, which
+ * is written straight out as the rows of the graph; when there are too many runs to read at once,
+ * the oldest are first merged together into longer runs. Only the verticies and one run are ever
+ * held in memory, however many edges the file has.
+ *
+ * <p>A built file holds, in little endian order: a header of the magic number, the format
+ * version, the number of verticies and the number of edges; the number and length of each
+ * vertex's name; the row offsets; and the rows of destinations. Opening a file maps the rows of
+ * destinations, so they are paged in by the operating system as they are read and never copied
+ * onto the heap. As the graph indexes its edges with ints, one file holds at most {@link
+ * #MAX_EDGES} edges.
+ *
+ * <p>Like the parallel loader, only plain files of numeric edge statements can be built, and a
+ * statement must not be split across lines.
+ */
+public final class CsrFile {
+
+  /** The most edges a file can hold, as the rows are mapped as a single buffer. */
+  public static final int MAX_EDGES = (Integer.MAX_VALUE - 8) / Integer.BYTES;
+
+  /** The number of edges sorted in memory before they are spilled to a run by default. */
+  public static final int DEFAULT_RUN_SIZE = 1 << 22;
+
+  // "GCSR" as a little endian int, to recognise a built file:
+  private static final int MAGIC = 0x52534347;
+
+  // version 1 kept each name's length in a byte, which wrapped for names of over 127 digits:
+  private static final int VERSION = 2;
+
+  private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+  // how much of the DOT file is read and tokenized at once:
+  private static final int WINDOW_SIZE = 1 << 24;
+
+  // how much of the end of the DOT file is read to find the closing brace:
+  private static final int TAIL_SIZE = 1 << 16;
+
+  private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+  // the most runs merged at once, so that a file is not left open for every run:
+  private static final int MERGE_WIDTH = 64;
+
+  private CsrFile() {}
+
+  /**
+   * Builds a DOT file into a file of sorted rows, spilling runs into the same folder as the built
+   * file.
+   *
+   * @param source the DOT file to read.
+   * @param destination the file to build, which must not exist yet.
+   * @throws FileAlreadyExistsException if the file to build already exists.
+   * @throws IOException if a file cannot be read or written, or the DOT file is not plain.
+   */
+  public static void build(Path source, Path destination) throws IOException {
+    Path folder = destination.toAbsolutePath().getParent();
+    build(source, destination, folder, DEFAULT_RUN_SIZE);
+  }
+
+  /**
+   * Builds a DOT file into a file of sorted rows. The built file is only created once every edge
+   * has been sorted, and is deleted again if it cannot be written in full.
+   *
+   * @param source the DOT file to read.
+   * @param destination the file to build, which must not exist yet.
+   * @param temporary the folder to spill sorted runs of edges into, which are deleted afterwards.
+   * @param runSize the number of edges to sort in memory before spilling them.
+   * @throws FileAlreadyExistsException if the file to build already exists.
+   * @throws IOException if a file cannot be read or written, or the DOT file is not plain.
+   * @throws IllegalArgumentException if the run size is not positive.
+   */
+  public static void build(Path source, Path destination, Path temporary, int runSize)
+      throws IOException {
+    if (runSize <= 0) {
+      throw new IllegalArgumentException("Runs must hold at least one edge");
+    }
+
+    final GraphMetrics.Span span = GraphMetrics.begin("CsrFile.build");
+    List<Path> runs = new ArrayList<>();
+
+    try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+      long[] body = findBody(in);
+
+      // name every vertex first, so that they can be ranked before any edge is kept:
+      VertexDictionary dictionary = new VertexDictionary();
+      readBody(in, body, (input, to) -> DotTokenizer.tokenize(input, 0, to, dictionary));
+
+      int vertexCount = dictionary.getSize();
+      int[] order = dictionary.numericalOrder();
+      int[] rank = new int[vertexCount];
+
+      for (int position = 0; position < vertexCount; position++) {
+        rank[order[position]] = position;
+      }
+
+      // then spill the edges as sorted runs of ranked keys:
+      long[] run = new long[runSize];
+      int[] runLength = new int[1];
+
+      readBody(
+          in,
+          body,
+          (input, to) -> {
+            EdgeBuffer edges = DotTokenizer.tokenize(input, 0, to, dictionary);
+
+            for (int i = 0; i < edges.getSize(); i++) {
+              if (runLength[0] == run.length) {
+                runs.add(spill(run, runLength[0], temporary));
+                runLength[0] = 0;
+              }
+
+              run[runLength[0]++] =
+                  (long) rank[edges.getSource(i)] << 32 | rank[edges.getDestination(i)];
+            }
+          });
+
+      if (runLength[0] > 0) {
+        runs.add(spill(run, runLength[0], temporary));
+      }
+
+      // merge the oldest runs into one until few enough are left to merge at once:
+      while (runs.size() > MERGE_WIDTH) {
+        Path merged = Files.createTempFile(temporary, "edges", ".run");
+        runs.add(merged);
+        List<Path> group = runs.subList(0, MERGE_WIDTH);
+        merge(group, merged);
+
+        for (Path file : group) {
+          Files.delete(file);
+        }
+
+        group.clear();
+      }
+
+      int edgeCount = write(destination, dictionary, order, runs);
+      GraphMetrics.touch(span, vertexCount, edgeCount);
+    } catch (UnsupportedSyntaxException e) {
+      throw new IOException("Only plain DOT files can be built: " + e.getMessage(), e);
+    } finally {
+      for (Path run : runs) {
+        Files.deleteIfExists(run);
+      }
+
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Checks whether a file was built by {@link #build(Path, Path)}, from its magic number.
+   *
+   * @param file the file to check.
+   * @return whether the file is a built file of rows.
+   * @throws IOException if the file cannot be read.
+   */
+  public static boolean isCsrFile(Path file) throws IOException {
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+      while (magic.hasRemaining()) {
+        if (in.read(magic) == -1) {
+          return false;
+        }
+      }
+
+      return magic.getInt(0) == MAGIC;
+    }
+  }
+
+  /**
+   * Opens a built file as a graph, mapping its rows into memory rather than reading them.
+   *
+   * <p>{@link GraphOption#INDEX_INCOMING} and {@link GraphOption#ORDER_FOR_LOCALITY} are ignored,
+   * as both lay every edge out again on the heap, so that a file larger than memory can still be
+   * opened. Checks that would use them search the mapped rows instead.
+   *
+   * @param file the built file to open.
+   * @param options the optional structures to build alongside the graph.
+   * @return the graph in the file.
+   * @throws IOException if the file cannot be read or was not built by this class.
+   */
+  public static Graph<String> open(Path file, Set<GraphOption> options) throws IOException {
+    final GraphMetrics.Span span = GraphMetrics.begin("CsrFile.open");
+
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer header = map(in, 0, HEADER_SIZE);
+
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException("Not a built graph file: " + file);
+      }
+
+      int vertexCount = header.getInt(8);
+      int edgeCount = header.getInt(12);
+      long lengthsStart = HEADER_SIZE + (long) Integer.BYTES * vertexCount;
+      long offsetsStart = lengthsStart + (long) Integer.BYTES * vertexCount;
+      long targetsStart = offsetsStart + (long) Integer.BYTES * (vertexCount + 1);
+
+      if (in.size() != targetsStart + (long) Integer.BYTES * edgeCount) {
+        throw new IOException("Built graph file is truncated: " + file);
+      }
+
+      // the verticies and offsets are small enough to read onto the heap:
+      int[] numbers = new int[vertexCount];
+      int[] lengths = new int[vertexCount];
+      int[] offsets = new int[vertexCount + 1];
+      map(in, HEADER_SIZE, lengthsStart - HEADER_SIZE).asIntBuffer().get(numbers);
+      map(in, lengthsStart, offsetsStart - lengthsStart).asIntBuffer().get(lengths);
+      map(in, offsetsStart, targetsStart - offsetsStart).asIntBuffer().get(offsets);
+
+      // the mapping stays valid once the channel is closed:
+      IntBuffer targets = map(in, targetsStart, (long) Integer.BYTES * edgeCount).asIntBuffer();
+
+      Set<GraphOption> mapped = EnumSet.noneOf(GraphOption.class);
+      mapped.addAll(options);
+      mapped.removeAll(EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY));
+
+      Graph<String> graph =
+          new Graph<String>(new Names(numbers, lengths), offsets, targets, mapped);
+      GraphMetrics.touch(span, vertexCount, edgeCount);
+      return graph;
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Built graph file is corrupt: " + file, e);
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /** Reads a window of a DOT file that ends at a line break. */
+  private interface WindowReader {
+    /**
+     * Reads the lines at the start of the window.
+     *
+     * @param input the window of bytes.
+     * @param to the position after the last byte to read.
+     * @throws UnsupportedSyntaxException if the lines are not plain.
+     * @throws IOException if spilling the edges read fails.
+     */
+    void read(byte[] input, int to) throws UnsupportedSyntaxException, IOException;
+  }
+
+  /**
+   * Finds the body of a DOT file from its first and last bytes, without reading the rest.
+   *
+   * @param in the open DOT file.
+   * @return the position of the first byte of the body and the position of the closing brace.
+   * @throws UnsupportedSyntaxException if the header or the end of the file are not plain.
+   * @throws IOException if the file cannot be read.
+   */
+  private static long[] findBody(FileChannel in) throws UnsupportedSyntaxException, IOException {
+    long size = in.size();
+    byte[] head = new byte[(int) Math.min(size, WINDOW_SIZE)];
+    readFully(in, 0, head, head.length);
+    int open = DotTokenizer.findOpeningBrace(head, head.length);
+
+    int tailSize = (int) Math.min(size - open - 1, TAIL_SIZE);
+    byte[] tail = new byte[tailSize];
+    readFully(in, size - tailSize, tail, tailSize);
+    long close = size - tailSize + DotTokenizer.findClosingBrace(tail, -1, tailSize);
+
+    return new long[] {open + 1, close};
+  }
+
+  /**
+   * Reads the body of a DOT file a window at a time, cutting each window at its last line break
+   * and carrying the rest over to the next.
+   *
+   * @param in the open DOT file.
+   * @param body the position of the first byte of the body and the position of the closing brace.
+   * @param reader what to do with each window.
+   * @throws UnsupportedSyntaxException if the body is not plain.
+   * @throws IOException if the file cannot be read, or a line does not fit in a window.
+   */
+  private static void readBody(FileChannel in, long[] body, WindowReader reader)
+      throws UnsupportedSyntaxException, IOException {
+    byte[] window = new byte[(int) Math.min(body[1] - body[0], WINDOW_SIZE)];
+    long position = body[0];
+    int carried = 0;
+
+    while (position < body[1]) {
+      int length = (int) Math.min(window.length - carried, body[1] - position);
+      readFully(in, position, window, carried, length);
+      position += length;
+      length += carried;
+
+      int cut = length;
+
+      if (position < body[1]) {
+        while (cut > 0 && window[cut - 1] != '\n') {
+          cut--;
+        }
+
+        if (cut == 0) {
+          throw new IOException("Line is longer than " + WINDOW_SIZE + " bytes");
+        }
+      }
+
+      reader.read(window, cut);
+      carried = length - cut;
+      System.arraycopy(window, cut, window, 0, carried);
+    }
+  }
+
+  /**
+   * Sorts a run of edge keys and writes it to a temporary file.
+   *
+   * @param run the keys, which are sorted in place.
+   * @param length the number of keys in the run.
+   * @param temporary the folder to write the run into.
+   * @return the file the run was written to.
+   * @throws IOException if the run cannot be written.
+   */
+  private static Path spill(long[] run, int length, Path temporary) throws IOException {
+    Arrays.parallelSort(run, 0, length);
+    Path file = Files.createTempFile(temporary, "edges", ".run");
+
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(file), WRITE_BUFFER_SIZE))) {
+      for (int i = 0; i < length; i++) {
+        out.writeLong(run[i]);
+      }
+    }
+
+    return file;
+  }
+
+  /**
+   * Merges sorted runs into one longer run, dropping repeated edges.
+   *
+   * @param runs the files of sorted runs of edge keys.
+   * @param merged the file to write the merged run to.
+   * @throws IOException if a run cannot be read or written.
+   */
+  private static void merge(List<Path> runs, Path merged) throws IOException {
+    PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparingLong(Run::getKey));
+
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(merged), WRITE_BUFFER_SIZE))) {
+      open(runs, queue);
+      long previous = -1;
+
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+
+        if (run.getKey() != previous) {
+          previous = run.getKey();
+          out.writeLong(previous);
+        }
+
+        requeue(queue, run);
+      }
+    } finally {
+      for (Run run : queue) {
+        run.close();
+      }
+    }
+  }
+
+  /**
+   * Opens runs and queues each one that is not empty at its first key.
+   *
+   * @param runs the files of sorted runs of edge keys.
+   * @param queue the queue of runs being merged.
+   * @throws IOException if a run cannot be read.
+   */
+  private static void open(List<Path> runs, PriorityQueue<Run> queue) throws IOException {
+    for (Path file : runs) {
+      requeue(queue, new Run(file));
+    }
+  }
+
+  /**
+   * Moves a run on to its next key and queues it again, or closes it if it has no keys left.
+   *
+   * @param queue the queue of runs being merged.
+   * @param run the run whose key was just taken.
+   * @throws IOException if the run cannot be read.
+   */
+  private static void requeue(PriorityQueue<Run> queue, Run run) throws IOException {
+    if (run.advance()) {
+      queue.add(run);
+    } else {
+      run.close();
+    }
+  }
+
+  /**
+   * Merges the sorted runs into the rows of the built file, dropping repeated edges, and writes
+   * the verticies and row offsets around them.
+   *
+   * @param destination the file to build, which must not exist yet.
+   * @param dictionary the names of the verticies.
+   * @param order the id of the vertex at each position of the numerical order.
+   * @param runs the files of sorted runs of edge keys.
+   * @return the number of edges written.
+   * @throws IOException if a file cannot be read or written, or there are too many edges.
+   */
+  private static int write(
+      Path destination, VertexDictionary dictionary, int[] order, List<Path> runs)
+      throws IOException {
+    int vertexCount = order.length;
+    long lengthsStart = HEADER_SIZE + (long) Integer.BYTES * vertexCount;
+    long offsetsStart = lengthsStart + (long) Integer.BYTES * vertexCount;
+    long targetsStart = offsetsStart + (long) Integer.BYTES * (vertexCount + 1);
+    int[] offsets = new int[vertexCount + 1];
+    int edgeCount = 0;
+
+    // the rows are written first, as the offsets are only known once every edge is merged:
+    PriorityQueue<Run> queue = new PriorityQueue<>(Comparator.comparingLong(Run::getKey));
+
+    // a file that already exists is never overwritten, and a file left half written is deleted:
+    FileChannel out =
+        FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    boolean complete = false;
+
+    try (out) {
+      try {
+        open(runs, queue);
+        ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long position = targetsStart;
+        long previous = -1;
+
+        while (!queue.isEmpty()) {
+          Run run = queue.poll();
+          long key = run.getKey();
+
+          if (key != previous) {
+            if (edgeCount == MAX_EDGES) {
+              throw new IOException("Graph has more than " + MAX_EDGES + " edges");
+            }
+
+            if (!buffer.hasRemaining()) {
+              position += drain(out, buffer, position);
+            }
+
+            buffer.putInt((int) key);
+            offsets[(int) (key >>> 32) + 1]++;
+            edgeCount++;
+            previous = key;
+          }
+
+          requeue(queue, run);
+        }
+
+        drain(out, buffer, position);
+      } finally {
+        for (Run run : queue) {
+          run.close();
+        }
+      }
+
+      for (int vertex = 0; vertex < vertexCount; vertex++) {
+        offsets[vertex + 1] += offsets[vertex];
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(vertexCount).putInt(edgeCount);
+      drain(out, header, 0);
+
+      ByteBuffer verticies =
+          ByteBuffer.allocate((int) (targetsStart - HEADER_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+
+      for (int id : order) {
+        verticies.putInt(dictionary.getNumber(id));
+      }
+
+      for (int id : order) {
+        verticies.putInt(dictionary.getLength(id));
+      }
+
+      verticies.position((int) (offsetsStart - HEADER_SIZE));
+      verticies.asIntBuffer().put(offsets);
+      verticies.position(verticies.capacity());
+      drain(out, verticies, HEADER_SIZE);
+      complete = true;
+    } finally {
+      if (!complete) {
+        Files.deleteIfExists(destination);
+      }
+    }
+
+    return edgeCount;
+  }
+
+  /**
+   * Writes everything put into a buffer to a file and empties the buffer.
+   *
+   * @param out the file to write to.
+   * @param buffer the buffer to write, up to its position.
+   * @param position where in the file to write the buffer.
+   * @return the number of bytes written.
+   * @throws IOException if the file cannot be written.
+   */
+  private static int drain(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+    buffer.flip();
+    int written = 0;
+
+    while (buffer.hasRemaining()) {
+      written += out.write(buffer, position + written);
+    }
+
+    buffer.clear();
+    return written;
+  }
+
+  /**
+   * Maps part of a file into memory as little endian bytes.
+   *
+   * @param in the open file.
+   * @param position where the part starts.
+   * @param size the number of bytes in the part.
+   * @return the read only mapping.
+   * @throws IOException if the file cannot be mapped.
+   */
+  private static ByteBuffer map(FileChannel in, long position, long size) throws IOException {
+    return in.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Reads bytes from a file until the buffer is full.
+   *
+   * @param in the open file.
+   * @param position where in the file to start reading.
+   * @param bytes the array to read into.
+   * @param length the number of bytes to read.
+   * @throws IOException if the file cannot be read or ends too soon.
+   */
+  private static void readFully(FileChannel in, long position, byte[] bytes, int length)
+      throws IOException {
+    readFully(in, position, bytes, 0, length);
+  }
+
+  /**
+   * Reads bytes from a file into part of an array until that part is full.
+   *
+   * @param in the open file.
+   * @param position where in the file to start reading.
+   * @param bytes the array to read into.
+   * @param from where in the array to start.
+   * @param length the number of bytes to read.
+   * @throws IOException if the file cannot be read or ends too soon.
+   */
+  private static void readFully(FileChannel in, long position, byte[] bytes, int from, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, from, length);
+
+    while (buffer.hasRemaining()) {
+      if (in.read(buffer, position + buffer.position() - from) == -1) {
+        throw new EOFException("File ended while reading");
+      }
+    }
+  }
+
+  /** A sorted run of edge keys being merged, read one key ahead. */
+  private static final class Run {
+    private final DataInputStream in;
+    private long key;
+
+    /**
+     * Opens a run for reading.
+     *
+     * @param file the file the run was spilled to.
+     * @throws IOException if the file cannot be opened.
+     */
+    private Run(Path file) throws IOException {
+      this.in =
+          new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+    }
+
+    /**
+     * Reads the next key of the run.
+     *
+     * @return whether there was another key.
+     * @throws IOException if the run cannot be read.
+     */
+    private boolean advance() throws IOException {
+      try {
+        key = in.readLong();
+        return true;
+      } catch (EOFException e) {
+        return false;
+      }
+    }
+
+    /**
+     * Gets the key the run is at.
+     *
+     * @return the current key.
+     */
+    private long getKey() {
+      return key;
+    }
+
+    /**
+     * Closes the run's file.
+     *
+     * @throws IOException if the file cannot be closed.
+     */
+    private void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * The names of the verticies of a built file, each made again from its number and length when
+   * it is read, as a name only holds digits. Names are matched against the numbers and lengths
+   * without being made.
+   */
+  private static final class Names extends AbstractList<String>
+      implements VertexList<String>, RandomAccess {
+    private final int[] numbers;
+    private final int[] lengths;
+
+    /**
+     * Creates the list of names.
+     *
+     * @param numbers the number of each vertex.
+     * @param lengths the number of digits in each vertex's name, counting leading zeros.
+     */
+    private Names(int[] numbers, int[] lengths) {
+      this.numbers = numbers;
+      this.lengths = lengths;
+    }
+
+    @Override
+    public String get(int index) {
+      String digits = Integer.toString(numbers[index]);
+      return "0".repeat(Math.max(0, lengths[index] - digits.length())) + digits;
+    }
+
+    @Override
+    public int size() {
+      return numbers.length;
+    }
+
+    @Override
+    public int getNumber(int index) {
+      return numbers[index];
+    }
+
+    @Override
+    public boolean isAt(int index, Object vertex) {
+      if (!(vertex instanceof String) || ((String) vertex).length() != lengths[index]) {
+        return false;
+      }
+
+      String name = (String) vertex;
+      long number = 0;
+
+      for (int i = 0; i < name.length() && number <= Integer.MAX_VALUE; i++) {
+        if (name.charAt(i) < '0' || name.charAt(i) > '9') {
+          return false;
+        }
+
+        number = number * 10 + (name.charAt(i) - '0');
+      }
+
+      return number == numbers[index];
+    }
+  }
+}
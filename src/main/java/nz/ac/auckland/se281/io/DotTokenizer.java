@@ -0,0 +1,256 @@
+package nz.ac.auckland.se281.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the plain subset of DOT that graph files are written in straight from their bytes: a
+ * {@code digraph} whose body only holds numeric vertex statements, edge statements and chains
+ * such as {@code 1 -> 2 -> 3}, optionally ended by semicolons, and line comments.
+ *
+ * <p>Anything else, such as attributes, quoted ids or subgraphs, throws an {@link
+ * UnsupportedSyntaxException} so that the file can be read by the full parser instead.
+ */
+final class DotTokenizer {
+
+  // longer ids could overflow an int, so are left to the full parser:
+  private static final int MAX_ID_LENGTH = 9;
+
+  private DotTokenizer() {}
+
+  /**
+   * Finds the body of the graph, between the braces after the {@code digraph} header.
+   *
+   * @param input the bytes of the graph file.
+   * @return the position of the first byte of the body and the position of the closing brace.
+   * @throws UnsupportedSyntaxException if the header or the end of the file are not plain.
+   */
+  static int[] findBody(byte[] input) throws UnsupportedSyntaxException {
+    int open = findOpeningBrace(input, input.length);
+    return new int[] {open + 1, findClosingBrace(input, open, input.length)};
+  }
+
+  /**
+   * Finds the brace that opens the body of the graph, after the {@code digraph} header.
+   *
+   * @param input the bytes at the start of the graph file.
+   * @param to the position after the last byte that has been read.
+   * @return the position of the opening brace.
+   * @throws UnsupportedSyntaxException if the header is not plain.
+   */
+  static int findOpeningBrace(byte[] input, int to) throws UnsupportedSyntaxException {
+    int i = skipSpace(input, 0, to);
+    int start = i;
+
+    while (i < to && isWordByte(input[i])) {
+      i++;
+    }
+
+    if (!new String(input, start, i - start, StandardCharsets.US_ASCII)
+        .equalsIgnoreCase("digraph")) {
+      throw new UnsupportedSyntaxException("Graph does not start with digraph");
+    }
+
+    // the graph may be given a name before its body:
+    i = skipSpace(input, i, to);
+
+    while (i < to && isWordByte(input[i])) {
+      i++;
+    }
+
+    i = skipSpace(input, i, to);
+
+    if (i == to || input[i] != '{') {
+      throw new UnsupportedSyntaxException("Graph header is not followed by a body");
+    }
+
+    return i;
+  }
+
+  /**
+   * Finds the brace that closes the body of the graph, at the end of the file.
+   *
+   * @param input the bytes at the end of the graph file.
+   * @param open the position of the opening brace, or -1 if it comes before the bytes given.
+   * @param to the position after the last byte of the file.
+   * @return the position of the closing brace.
+   * @throws UnsupportedSyntaxException if the end of the file is not plain.
+   */
+  static int findClosingBrace(byte[] input, int open, int to) throws UnsupportedSyntaxException {
+    int end = to - 1;
+
+    while (end > open && isSpace(input[end])) {
+      end--;
+    }
+
+    if (end == open || input[end] != '}') {
+      throw new UnsupportedSyntaxException("Graph body is not closed at the end of the file");
+    }
+
+    // a closing brace inside a comment would hide a missing one:
+    for (int j = end - 1; j > Math.max(open, 0) && input[j] != '\n'; j--) {
+      if (input[j] == '/' && input[j - 1] == '/') {
+        throw new UnsupportedSyntaxException("Graph body is closed inside a comment");
+      }
+    }
+
+    return end;
+  }
+
+  /**
+   * Splits part of the input into chunks that start at the beginning of a line, so that each
+   * chunk can be read on its own.
+   *
+   * @param input the bytes of the graph file.
+   * @param from the position of the first byte to split.
+   * @param to the position after the last byte to split.
+   * @param chunkSize the smallest number of bytes in each chunk but the last.
+   * @return the position each chunk starts at, followed by {@code to}.
+   */
+  static int[] split(byte[] input, int from, int to, int chunkSize) {
+    List<Integer> bounds = new ArrayList<>();
+    bounds.add(from);
+    int start = from;
+
+    while (to - start > chunkSize) {
+      int cut = start + chunkSize;
+
+      while (cut < to && input[cut] != '\n') {
+        cut++;
+      }
+
+      if (cut >= to - 1) {
+        break;
+      }
+
+      start = cut + 1;
+      bounds.add(start);
+    }
+
+    bounds.add(to);
+    return bounds.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Reads the statements in one chunk of the body, interning each vertex as it is seen.
+   *
+   * @param input the bytes of the graph file.
+   * @param from the position of the first byte of the chunk.
+   * @param to the position after the last byte of the chunk.
+   * @param dictionary the dictionary of the chunk's verticies.
+   * @return the edges in the chunk, as pairs of vertex ids.
+   * @throws UnsupportedSyntaxException if the chunk is not plain, or a statement crosses into a
+   *     neighbouring chunk.
+   */
+  static EdgeBuffer tokenize(byte[] input, int from, int to, VertexDictionary dictionary)
+      throws UnsupportedSyntaxException {
+    EdgeBuffer edges = new EdgeBuffer();
+    int previous = -1; // the last vertex of the statement being read
+    boolean arrow = false; // whether an arrow is waiting for its destination
+    int i = from;
+
+    while (i < to) {
+      byte c = input[i];
+
+      if (isSpace(c)) {
+        i++;
+      } else if (c == ';') {
+        if (arrow) {
+          throw new UnsupportedSyntaxException("Edge has no destination");
+        }
+
+        previous = -1;
+        i++;
+      } else if (c == '/' && i + 1 < to && input[i + 1] == '/') {
+        while (i < to && input[i] != '\n') {
+          i++;
+        }
+      } else if (c == '-' && i + 1 < to && input[i + 1] == '>') {
+        // an arrow without a source may continue a statement from the previous chunk:
+        if (previous == -1 || arrow) {
+          throw new UnsupportedSyntaxException("Edge has no source");
+        }
+
+        arrow = true;
+        i += 2;
+      } else if (c >= '0' && c <= '9') {
+        int start = i;
+
+        while (i < to && isWordByte(input[i])) {
+          i++;
+        }
+
+        for (int j = start; j < i; j++) {
+          if (input[j] < '0' || input[j] > '9' || i - start > MAX_ID_LENGTH) {
+            throw new UnsupportedSyntaxException("Vertex id is not a small number");
+          }
+        }
+
+        int vertex = dictionary.intern(input, start, i - start);
+
+        if (arrow) {
+          edges.add(previous, vertex);
+          arrow = false;
+        }
+
+        previous = vertex;
+      } else {
+        throw new UnsupportedSyntaxException("Unexpected character '" + (char) c + "'");
+      }
+    }
+
+    // an arrow at the end may continue into the next chunk:
+    if (arrow) {
+      throw new UnsupportedSyntaxException("Edge has no destination");
+    }
+
+    return edges;
+  }
+
+  /**
+   * Skips whitespace and line comments.
+   *
+   * @param input the bytes of the graph file.
+   * @param from the position to start skipping from.
+   * @param to the position to stop skipping at.
+   * @return the position of the first byte that is not skipped.
+   */
+  private static int skipSpace(byte[] input, int from, int to) {
+    int i = from;
+
+    while (i < to) {
+      if (isSpace(input[i])) {
+        i++;
+      } else if (input[i] == '/' && i + 1 < to && input[i + 1] == '/') {
+        while (i < to && input[i] != '\n') {
+          i++;
+        }
+      } else {
+        break;
+      }
+    }
+
+    return i;
+  }
+
+  /**
+   * Checks if a byte is whitespace.
+   *
+   * @param c the byte to check.
+   * @return true if the byte is a space, tab or line break.
+   */
+  private static boolean isSpace(byte c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  /**
+   * Checks if a byte can be part of an unquoted DOT id.
+   *
+   * @param c the byte to check.
+   * @return true if the byte is a letter, digit or underscore.
+   */
+  private static boolean isWordByte(byte c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+  }
+}
@@ -0,0 +1,67 @@
+package nz.ac.auckland.se281.io;
+
+import java.util.Arrays;
+
+/**
+ * The edges read from one chunk of a graph file, as pairs of vertex ids stored in growable arrays
+ * so that no object is allocated per edge.
+ */
+final class EdgeBuffer {
+
+  private int[] sources;
+  private int[] destinations;
+  private int size;
+
+  /** Creates a new empty buffer. */
+  EdgeBuffer() {
+    this.sources = new int[16];
+    this.destinations = new int[16];
+    this.size = 0;
+  }
+
+  /**
+   * Adds an edge to the end of the buffer.
+   *
+   * @param source the id of the vertex the edge leaves.
+   * @param destination the id of the vertex the edge enters.
+   */
+  void add(int source, int destination) {
+    if (size == sources.length) {
+      sources = Arrays.copyOf(sources, size * 2);
+      destinations = Arrays.copyOf(destinations, size * 2);
+    }
+
+    sources[size] = source;
+    destinations[size] = destination;
+    size++;
+  }
+
+  /**
+   * Gets the number of edges in the buffer.
+   *
+   * @return the number of edges.
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the source of an edge.
+   *
+   * @param edge the position of the edge in the buffer.
+   * @return the id of the vertex the edge leaves.
+   */
+  int getSource(int edge) {
+    return sources[edge];
+  }
+
+  /**
+   * Gets the destination of an edge.
+   *
+   * @param edge the position of the edge in the buffer.
+   * @return the id of the vertex the edge enters.
+   */
+  int getDestination(int edge) {
+    return destinations[edge];
+  }
+}
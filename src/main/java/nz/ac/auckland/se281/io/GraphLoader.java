@@ -0,0 +1,301 @@
+package nz.ac.auckland.se281.io;
+
+import com.paypal.digraph.parser.GraphEdge;
+import com.paypal.digraph.parser.GraphNode;
+import com.paypal.digraph.parser.GraphParser;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+import nz.ac.auckland.se281.datastructures.Edge;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphOption;
+import nz.ac.auckland.se281.metrics.GraphMetrics;
+
+/**
+ * Loads graphs from DOT files using every core.
+ *
+ * <p>The body of the file is split into chunks at line breaks, and each chunk is tokenized on the
+ * common fork join pool into its own buffer of edges and its own dictionary of vertex names. The
+ * dictionaries are merged, and the buffers are merged straight into the rows of the graph: out
+ * degrees are counted in parallel, turned into row offsets with a parallel prefix sum, and each
+ * edge is scattered into its row before the rows are sorted. The graph then collapses edges that
+ * the file gives more than once, optionally counting them.
+ *
+ * <p>Vertex names stay as bytes in the merged dictionary, and the graph is given a list that only
+ * decodes a name into a string when it is read.
+ *
+ * <p>Files that use more of DOT than plain numeric edge statements are read by the full parser
+ * instead, so every file loads the same graph either way.
+ */
+public final class GraphLoader {
+
+  // below this many bytes a chunk is not worth handing to another thread:
+  private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+  // more chunks than threads lets threads that finish early take work from slower ones:
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  /** Whether loading with default options keeps edges off the heap, set with -Dgraph.offheap. */
+  public static final boolean OFF_HEAP = Boolean.getBoolean("graph.offheap");
+
+  /** Whether loading with default options bit packs the edges, set with -Dgraph.packed. */
+  public static final boolean PACK_ROWS = Boolean.getBoolean("graph.packed");
+
+  /**
+   * Whether loading with default options fingerprints the graph, which it does when results are
+   * cached on disk with -Dgraph.cache.
+   */
+  public static final boolean FINGERPRINT = System.getProperty("graph.cache") != null;
+
+  private GraphLoader() {}
+
+  /**
+   * Loads the graph in a DOT file, indexing its incoming edges and ordering its verticies for
+   * locality, as a loaded graph is usually checked many times. With {@code -Dgraph.offheap=true}
+   * the edges are also kept off the heap, with {@code -Dgraph.packed=true} they are bit packed,
+   * and with {@code -Dgraph.cache} set the graph is fingerprinted.
+   *
+   * @param file the file to read.
+   * @return the graph in the file.
+   * @throws IOException if the file cannot be read.
+   */
+  public static Graph<String> load(Path file) throws IOException {
+    Set<GraphOption> options =
+        EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY);
+
+    if (OFF_HEAP) {
+      options.add(GraphOption.OFF_HEAP);
+    }
+
+    if (PACK_ROWS) {
+      options.add(GraphOption.PACK_ROWS);
+    }
+
+    if (FINGERPRINT) {
+      options.add(GraphOption.FINGERPRINT);
+    }
+
+    return load(file, options);
+  }
+
+  /**
+   * Loads the graph in a DOT file, building the given optional structures.
+   *
+   * <p>With {@link GraphOption#COUNT_MULTIPLICITY} an edge the file gives more than once is kept
+   * once with its count as its weight. Files read by the full parser count every edge once, as the
+   * parser already merges repeated edges.
+   *
+   * <p>A file built by {@link CsrFile#build(Path, Path)} is opened with its rows mapped into memory
+   * instead of being read, building only the options {@link CsrFile#open(Path, Set)} keeps.
+   *
+   * @param file the file to read.
+   * @param options the optional structures to build alongside the graph.
+   * @return the graph in the file.
+   * @throws IOException if the file cannot be read.
+   */
+  public static Graph<String> load(Path file, Set<GraphOption> options) throws IOException {
+    final GraphMetrics.Span span = GraphMetrics.begin("GraphLoader.load");
+
+    try {
+      if (Files.isRegularFile(file) && CsrFile.isCsrFile(file)) {
+        return CsrFile.open(file, options);
+      }
+
+      byte[] input;
+
+      try (InputStream in = new FileInputStream(file.toFile())) {
+        input = in.readAllBytes();
+      }
+
+      Graph<String> graph;
+
+      try {
+        graph = loadParallel(input, options);
+      } catch (UnsupportedSyntaxException e) {
+        graph = loadSequential(input, options);
+      }
+
+      GraphMetrics.touch(span, graph.getVerticies().size(), graph.getEdgeCount());
+      return graph;
+    } finally {
+      GraphMetrics.end(span);
+    }
+  }
+
+  /**
+   * Loads a graph by tokenizing chunks of the file in parallel and merging their edges into rows.
+   *
+   * @param input the bytes of the file.
+   * @param options the optional structures to build alongside the graph.
+   * @return the graph in the file.
+   * @throws UnsupportedSyntaxException if the file is not plain enough to be read this way.
+   * @throws IOException if the loading thread is interrupted.
+   */
+  private static Graph<String> loadParallel(byte[] input, Set<GraphOption> options)
+      throws UnsupportedSyntaxException, IOException {
+    int[] body = DotTokenizer.findBody(input);
+    int chunkSize =
+        Math.max(
+            MIN_CHUNK_SIZE,
+            (body[1] - body[0]) / (ForkJoinPool.getCommonPoolParallelism() * CHUNKS_PER_THREAD));
+    int[] bounds = DotTokenizer.split(input, body[0], body[1], chunkSize);
+
+    // tokenize every chunk on the worker pool, each into its own dictionary:
+    int chunkCount = bounds.length - 1;
+    VertexDictionary[] dictionaries = new VertexDictionary[chunkCount];
+    List<Callable<EdgeBuffer>> tasks = new ArrayList<>();
+
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      VertexDictionary dictionary = new VertexDictionary();
+      int from = bounds[chunk];
+      int to = bounds[chunk + 1];
+      dictionaries[chunk] = dictionary;
+      tasks.add(() -> DotTokenizer.tokenize(input, from, to, dictionary));
+    }
+
+    EdgeBuffer[] buffers = new EdgeBuffer[chunkCount];
+    List<Future<EdgeBuffer>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      buffers[chunk] = await(results.get(chunk));
+    }
+
+    // merge the chunks' dictionaries, remembering where each chunk's ids went:
+    VertexDictionary dictionary = new VertexDictionary();
+    int[][] ids = new int[chunkCount][];
+
+    for (int chunk = 0; chunk < chunkCount; chunk++) {
+      ids[chunk] = new int[dictionaries[chunk].getSize()];
+
+      for (int id = 0; id < ids[chunk].length; id++) {
+        ids[chunk][id] = dictionary.intern(dictionaries[chunk], id);
+      }
+    }
+
+    // rank the verticies numerically, breaking ties between equal numbers by id:
+    int vertexCount = dictionary.getSize();
+    int[] order = dictionary.numericalOrder();
+    int[] rank = new int[vertexCount];
+
+    IntStream.range(0, vertexCount)
+        .parallel()
+        .forEach(position -> rank[order[position]] = position);
+
+    // translate each chunk's ids straight to ranks:
+    IntStream.range(0, chunkCount)
+        .parallel()
+        .forEach(chunk -> Arrays.setAll(ids[chunk], id -> rank[ids[chunk][id]]));
+
+    // count the out degree of every vertex, then sum them into the start of each row:
+    AtomicIntegerArray degrees = new AtomicIntegerArray(vertexCount + 1);
+
+    IntStream.range(0, chunkCount)
+        .parallel()
+        .forEach(
+            chunk -> {
+              for (int i = 0; i < buffers[chunk].getSize(); i++) {
+                degrees.incrementAndGet(ids[chunk][buffers[chunk].getSource(i)] + 1);
+              }
+            });
+
+    int[] offsets = new int[vertexCount + 1];
+    Arrays.parallelSetAll(offsets, degrees::get);
+    Arrays.parallelPrefix(offsets, Integer::sum);
+
+    // scatter each edge into the next free place of its source's row:
+    AtomicIntegerArray cursors = new AtomicIntegerArray(offsets);
+    int[] targets = new int[offsets[vertexCount]];
+
+    IntStream.range(0, chunkCount)
+        .parallel()
+        .forEach(
+            chunk -> {
+              EdgeBuffer buffer = buffers[chunk];
+
+              for (int i = 0; i < buffer.getSize(); i++) {
+                int source = ids[chunk][buffer.getSource(i)];
+                targets[cursors.getAndIncrement(source)] = ids[chunk][buffer.getDestination(i)];
+              }
+            });
+
+    // sort every row, leaving the graph to collapse edges the file gives more than once:
+    IntStream.range(0, vertexCount)
+        .parallel()
+        .forEach(vertex -> Arrays.sort(targets, offsets[vertex], offsets[vertex + 1]));
+
+    return new Graph<String>(dictionary.toList(order), offsets, targets, options);
+  }
+
+  /**
+   * Loads a graph with the full DOT parser, for files that use syntax the parallel loader does not
+   * read.
+   *
+   * @param input the bytes of the file.
+   * @param options the optional structures to build alongside the graph.
+   * @return the graph in the file.
+   */
+  private static Graph<String> loadSequential(byte[] input, Set<GraphOption> options) {
+    final GraphParser parser = new GraphParser(new ByteArrayInputStream(input));
+
+    final Set<String> verticies = new HashSet<>();
+
+    for (final GraphNode node : parser.getNodes().values()) {
+      verticies.add(node.getId());
+    }
+
+    final Set<Edge<String>> edges = new HashSet<>();
+
+    for (final GraphEdge edge : parser.getEdges().values()) {
+      edges.add(new Edge<>(edge.getNode1().getId(), edge.getNode2().getId()));
+    }
+
+    return new Graph<>(verticies, edges, options);
+  }
+
+  /**
+   * Waits for a chunk to be tokenized.
+   *
+   * @param result the pending result of the chunk.
+   * @return the edges in the chunk.
+   * @throws UnsupportedSyntaxException if the chunk is not plain enough to be read this way.
+   * @throws IOException if the loading thread is interrupted.
+   */
+  private static EdgeBuffer await(Future<EdgeBuffer> result)
+      throws UnsupportedSyntaxException, IOException {
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while loading the graph");
+    } catch (ExecutionException e) {
+      // the fork join pool may wrap the exception thrown by the task more than once:
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof UnsupportedSyntaxException) {
+          throw (UnsupportedSyntaxException) cause;
+        }
+      }
+
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,163 @@
+package nz.ac.auckland.se281.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * Writes listings, such as every edge of a graph or the order of a search, as their elements are
+ * produced instead of building the whole listing in memory first.
+ *
+ * <p>Text is encoded into a fixed size buffer that is written to a channel over the output stream
+ * each time it fills, so the first bytes are written as soon as the first chunk is ready and the
+ * memory used does not grow with the size of the listing. Closing the writer flushes it but leaves
+ * the output stream open.
+ */
+public final class ListingWriter implements Closeable {
+
+  private static final int CHUNK_SIZE = 1 << 13;
+
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+
+  private final OutputStream out;
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final Charset charset;
+
+  /**
+   * Creates a writer that encodes text in the platform's default charset, as a print stream does.
+   *
+   * @param out The stream to write to.
+   */
+  public ListingWriter(final OutputStream out) {
+    this(out, Charset.defaultCharset());
+  }
+
+  /**
+   * Creates a writer that encodes text in the given charset.
+   *
+   * @param out The stream to write to.
+   * @param charset The charset to encode text in.
+   */
+  public ListingWriter(final OutputStream out, final Charset charset) {
+    this.out = out;
+    this.channel = Channels.newChannel(out);
+    this.buffer = ByteBuffer.allocate(CHUNK_SIZE);
+    this.charset = charset;
+  }
+
+  /**
+   * Writes some text.
+   *
+   * @param text The text to write.
+   * @return This writer.
+   */
+  public ListingWriter write(final Object text) {
+    final String string = String.valueOf(text);
+
+    for (int i = 0; i < string.length(); i++) {
+      final char c = string.charAt(i);
+
+      // ascii is the same in every charset a terminal uses, so skip the encoder:
+      if (c >= 0x80) {
+        writeBytes(string.substring(i).getBytes(charset));
+        return this;
+      }
+
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+
+      buffer.put((byte) c);
+    }
+
+    return this;
+  }
+
+  /**
+   * Ends the current line.
+   *
+   * @return This writer.
+   */
+  public ListingWriter newLine() {
+    return write(LINE_SEPARATOR);
+  }
+
+  /**
+   * Writes elements on one line in the same form as {@link java.util.AbstractCollection#toString},
+   * such as {@code [1, 2, 3]}, taking each element from the iterator only when it is written.
+   *
+   * @param elements The elements to write.
+   * @return This writer.
+   */
+  public ListingWriter writeList(final Iterator<?> elements) {
+    write("[");
+
+    while (elements.hasNext()) {
+      write(elements.next());
+
+      if (elements.hasNext()) {
+        write(", ");
+      }
+    }
+
+    return write("]").newLine();
+  }
+
+  /** Writes everything buffered so far through to the output stream. */
+  public void flush() {
+    drain();
+
+    try {
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Flushes the writer, leaving the output stream open. */
+  @Override
+  public void close() {
+    flush();
+  }
+
+  /**
+   * Writes bytes that have already been encoded.
+   *
+   * @param bytes The bytes to write.
+   */
+  private void writeBytes(final byte[] bytes) {
+    int written = 0;
+
+    while (written < bytes.length) {
+      if (!buffer.hasRemaining()) {
+        drain();
+      }
+
+      final int length = Math.min(buffer.remaining(), bytes.length - written);
+      buffer.put(bytes, written, length);
+      written += length;
+    }
+  }
+
+  /** Writes the buffered chunk to the channel and empties the buffer. */
+  private void drain() {
+    buffer.flip();
+
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    buffer.clear();
+  }
+}
@@ -0,0 +1,19 @@
+package nz.ac.auckland.se281.io;
+
+/**
+ * Thrown when a graph file uses DOT syntax that the fast loader does not read, so that it should
+ * be read by the full parser instead.
+ */
+final class UnsupportedSyntaxException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a new exception.
+   *
+   * @param message what could not be read.
+   */
+  UnsupportedSyntaxException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,280 @@
+package nz.ac.auckland.se281.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import nz.ac.auckland.se281.datastructures.VertexList;
+
+/**
+ * Gives every distinct vertex name read from a graph file a dense id, in the order they are first
+ * seen.
+ *
+ * <p>Names are never kept as strings. Their bytes are appended to a single arena, found again
+ * through an open addressing table of ids, and only decoded into a string when a caller asks for
+ * one. A dictionary is not thread safe, so the loader gives each chunk of a file its own and
+ * merges them afterwards.
+ */
+final class VertexDictionary {
+
+  private static final int EMPTY_SLOT = -1;
+
+  private byte[] arena;
+  private int arenaSize;
+
+  // where each id's name starts in the arena, followed by the end of the last name:
+  private int[] starts;
+  private int[] hashes;
+  private int size;
+
+  // ids by the hash of their name, probed linearly:
+  private int[] slots;
+
+  /** Creates a new empty dictionary. */
+  VertexDictionary() {
+    this.arena = new byte[256];
+    this.arenaSize = 0;
+    this.starts = new int[65];
+    this.hashes = new int[64];
+    this.size = 0;
+    this.slots = new int[128];
+    Arrays.fill(slots, EMPTY_SLOT);
+  }
+
+  /**
+   * Gets the id of a vertex name, giving it the next unused id if it has not been seen before.
+   *
+   * @param bytes the bytes holding the name.
+   * @param from the position of the name's first byte.
+   * @param length the number of bytes in the name.
+   * @return the id of the vertex.
+   */
+  int intern(byte[] bytes, int from, int length) {
+    int hash = hash(bytes, from, length);
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+
+    while (slots[slot] != EMPTY_SLOT) {
+      int id = slots[slot];
+
+      if (hashes[id] == hash
+          && Arrays.equals(arena, starts[id], starts[id + 1], bytes, from, from + length)) {
+        return id;
+      }
+
+      slot = (slot + 1) & mask;
+    }
+
+    if (size == hashes.length) {
+      starts = Arrays.copyOf(starts, size * 2 + 1);
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+
+    if (arenaSize + length > arena.length) {
+      arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+    }
+
+    System.arraycopy(bytes, from, arena, arenaSize, length);
+    arenaSize += length;
+
+    int id = size;
+    hashes[id] = hash;
+    starts[id + 1] = arenaSize;
+    slots[slot] = id;
+    size++;
+
+    // keep the table at most half full so that probes stay short:
+    if (size * 2 > slots.length) {
+      resize();
+    }
+
+    return id;
+  }
+
+  /**
+   * Gets the id of a name from another dictionary, giving it the next unused id if it has not been
+   * seen before.
+   *
+   * @param other the dictionary holding the name.
+   * @param id the id of the name in the other dictionary.
+   * @return the id of the vertex in this dictionary.
+   */
+  int intern(VertexDictionary other, int id) {
+    return intern(other.arena, other.starts[id], other.starts[id + 1] - other.starts[id]);
+  }
+
+  /**
+   * Gets the number of distinct names that have been interned.
+   *
+   * @return the number of verticies.
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Reads a name as the decimal number it is made of.
+   *
+   * @param id the id of the name, which must only hold digits.
+   * @return the number the name stands for.
+   */
+  int getNumber(int id) {
+    int number = 0;
+
+    for (int i = starts[id]; i < starts[id + 1]; i++) {
+      number = number * 10 + (arena[i] - '0');
+    }
+
+    return number;
+  }
+
+  /**
+   * Gets the number of bytes in a name.
+   *
+   * @param id the id of the name.
+   * @return the length of the name.
+   */
+  int getLength(int id) {
+    return starts[id + 1] - starts[id];
+  }
+
+  /**
+   * Orders the ids by the number each name stands for, breaking ties between equal numbers by id.
+   *
+   * @return the id of the name at each position of the numerical order.
+   */
+  int[] numericalOrder() {
+    long[] keys = new long[size];
+    Arrays.parallelSetAll(keys, id -> (long) getNumber(id) << 32 | id);
+    Arrays.parallelSort(keys);
+
+    int[] order = new int[size];
+    Arrays.parallelSetAll(order, position -> (int) keys[position]);
+
+    return order;
+  }
+
+  /**
+   * Creates a list of names in the given order, which shares the arena and decodes each name when
+   * it is read. The lookup table is left behind, so no more names should be interned once the
+   * dictionary has been turned into a list.
+   *
+   * @param order the id of the name at each position of the list.
+   * @return the read only list of names.
+   */
+  List<String> toList(int[] order) {
+    byte[] names = Arrays.copyOf(arena, arenaSize);
+    int[] bounds = Arrays.copyOf(starts, size + 1);
+
+    return new Names(names, bounds, order);
+  }
+
+  /** Doubles the lookup table and places every id again. */
+  private void resize() {
+    slots = new int[slots.length * 2];
+    Arrays.fill(slots, EMPTY_SLOT);
+    int mask = slots.length - 1;
+
+    for (int id = 0; id < size; id++) {
+      int slot = hashes[id] & mask;
+
+      while (slots[slot] != EMPTY_SLOT) {
+        slot = (slot + 1) & mask;
+      }
+
+      slots[slot] = id;
+    }
+  }
+
+  /**
+   * Hashes the bytes of a name, spreading the result so that the low bits can index the table.
+   *
+   * @param bytes the bytes holding the name.
+   * @param from the position of the name's first byte.
+   * @param length the number of bytes in the name.
+   * @return the hash of the name.
+   */
+  private static int hash(byte[] bytes, int from, int length) {
+    int hash = 0;
+
+    for (int i = from; i < from + length; i++) {
+      hash = hash * 31 + bytes[i];
+    }
+
+    return hash * 0x9E3779B9 ^ hash >>> 16;
+  }
+
+  /**
+   * A read only list of names that decodes each one from the arena only when it is read, and reads
+   * numbers and matches names against the bytes in the arena, so that looking a vertex up never
+   * decodes a name.
+   */
+  private static final class Names extends AbstractList<String>
+      implements VertexList<String>, RandomAccess {
+    private final byte[] arena;
+    private final int[] starts;
+    private final int[] order;
+
+    /**
+     * Creates a list of names.
+     *
+     * @param arena the bytes of every name.
+     * @param starts where each id's name starts in the arena, followed by the end of the last.
+     * @param order the id of the name at each position of the list.
+     */
+    private Names(byte[] arena, int[] starts, int[] order) {
+      this.arena = arena;
+      this.starts = starts;
+      this.order = order;
+    }
+
+    @Override
+    public String get(int index) {
+      int id = order[index];
+      return new String(arena, starts[id], starts[id + 1] - starts[id], StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public int size() {
+      return order.length;
+    }
+
+    @Override
+    public int getNumber(int index) {
+      int id = order[index];
+      int number = 0;
+
+      for (int i = starts[id]; i < starts[id + 1]; i++) {
+        number = number * 10 + (arena[i] - '0');
+      }
+
+      return number;
+    }
+
+    @Override
+    public boolean isAt(int index, Object vertex) {
+      if (!(vertex instanceof String)) {
+        return false;
+      }
+
+      String name = (String) vertex;
+      int id = order[index];
+
+      if (name.length() != starts[id + 1] - starts[id]) {
+        return false;
+      }
+
+      // decoding maps each byte outside of ASCII to the replacement character:
+      for (int i = 0; i < name.length(); i++) {
+        byte b = arena[starts[id] + i];
+
+        if (name.charAt(i) != (b < 0 ? '\uFFFD' : (char) b)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+}
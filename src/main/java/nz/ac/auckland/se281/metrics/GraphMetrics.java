@@ -0,0 +1,202 @@
+package nz.ac.auckland.se281.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Records call counts, latencies, work done and allocation for graph operations and calculator
+ * commands.
+ *
+ * <p>Metrics are only collected when the JVM is started with {@code -Dgraph.metrics=true}.
+ * Otherwise {@link #begin(String)} returns null and every other method returns straight away, and
+ * as {@link #ENABLED} is a constant the JIT removes the instrumentation from compiled code.
+ */
+public final class GraphMetrics {
+
+  /** Whether metrics are being collected, fixed when the class is first loaded. */
+  public static final boolean ENABLED = Boolean.getBoolean("graph.metrics");
+
+  private static final String DOMAIN = "nz.ac.auckland.se281";
+
+  private static final ConcurrentMap<String, OperationStats> OPERATIONS =
+      new ConcurrentHashMap<>();
+
+  private static final com.sun.management.ThreadMXBean ALLOCATION = findAllocationBean();
+
+  /** A single call of an operation that is being measured. */
+  public static final class Span {
+    private final String operation;
+    private final long startNanos;
+    private final long startBytes;
+    private long verticies;
+    private long edges;
+
+    /**
+     * Starts measuring a call.
+     *
+     * @param operation the name of the operation being called.
+     */
+    private Span(String operation) {
+      this.operation = operation;
+      this.startBytes = allocatedBytes();
+      this.startNanos = System.nanoTime();
+    }
+  }
+
+  private GraphMetrics() {}
+
+  /**
+   * Starts measuring a call of an operation.
+   *
+   * @param operation the name of the operation being called.
+   * @return the span to pass to {@link #end(Span)}, or null when metrics are disabled.
+   */
+  public static Span begin(String operation) {
+    if (!ENABLED) {
+      return null;
+    }
+
+    return new Span(operation);
+  }
+
+  /**
+   * Adds to the work done by a call that is being measured.
+   *
+   * @param span the span of the call, which may be null.
+   * @param verticies the number of verticies visited.
+   * @param edges the number of edges followed.
+   */
+  public static void touch(Span span, long verticies, long edges) {
+    if (span != null) {
+      span.verticies += verticies;
+      span.edges += edges;
+    }
+  }
+
+  /**
+   * Finishes measuring a call and adds it to its operation's metrics.
+   *
+   * @param span the span of the call, which may be null.
+   */
+  public static void end(Span span) {
+    if (span == null) {
+      return;
+    }
+
+    long nanos = System.nanoTime() - span.startNanos;
+    long bytes = allocatedBytes() - span.startBytes;
+
+    OPERATIONS
+        .computeIfAbsent(span.operation, GraphMetrics::register)
+        .record(nanos, span.verticies, span.edges, Math.max(bytes, 0));
+  }
+
+  /**
+   * Gets the metrics of every operation that has been called, sorted by name.
+   *
+   * @return the metrics of each operation.
+   */
+  public static List<OperationStats> getOperations() {
+    List<OperationStats> operations = new ArrayList<>(OPERATIONS.values());
+    operations.sort(Comparator.comparing(OperationStats::getName));
+    return operations;
+  }
+
+  /**
+   * Formats the metrics of every operation that has been called as a table.
+   *
+   * @return the table, with one row per operation.
+   */
+  public static String report() {
+    final StringBuilder sb = new StringBuilder();
+    final String format = "%-36s %8s %12s %12s %12s %12s %12s %14s%n";
+
+    sb.append(
+        String.format(
+            format,
+            "Operation",
+            "Calls",
+            "Mean(ns)",
+            "p50(ns)",
+            "p99(ns)",
+            "Verticies",
+            "Edges",
+            "Allocated(B)"));
+
+    for (OperationStats stats : getOperations()) {
+      sb.append(
+          String.format(
+              format,
+              stats.getName(),
+              stats.getCallCount(),
+              stats.getMeanNanos(),
+              stats.getMedianNanos(),
+              stats.getP99Nanos(),
+              stats.getVerticiesTouched(),
+              stats.getEdgesTouched(),
+              stats.getAllocatedBytes()));
+    }
+
+    return sb.toString();
+  }
+
+  /**
+   * Creates the metrics of a newly seen operation and publishes them through JMX.
+   *
+   * @param operation the name of the operation.
+   * @return the new metrics.
+   */
+  private static OperationStats register(String operation) {
+    OperationStats stats = new OperationStats(operation);
+
+    try {
+      ObjectName name =
+          new ObjectName(DOMAIN + ":type=GraphMetrics,name=" + ObjectName.quote(operation));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+    } catch (JMException e) {
+      // metrics are still available through the STATS command without JMX
+    }
+
+    return stats;
+  }
+
+  /**
+   * Reads how many bytes the current thread has allocated so far.
+   *
+   * @return the allocated bytes, or 0 if the JVM cannot measure allocation.
+   */
+  private static long allocatedBytes() {
+    return ALLOCATION == null ? 0 : ALLOCATION.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Finds the thread bean that can measure allocation, if this JVM provides one and it is enabled.
+   *
+   * @return the thread bean, or null if allocation cannot be measured.
+   */
+  private static com.sun.management.ThreadMXBean findAllocationBean() {
+    if (!ENABLED) {
+      return null;
+    }
+
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocation = (com.sun.management.ThreadMXBean) bean;
+
+      if (allocation.isThreadAllocatedMemorySupported()) {
+        allocation.setThreadAllocatedMemoryEnabled(true);
+        return allocation;
+      }
+    }
+
+    return null;
+  }
+}
@@ -0,0 +1,123 @@
+package nz.ac.auckland.se281.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The running totals and latency histogram of a single graph operation. Every field can be updated
+ * from many threads at once without locking.
+ */
+public class OperationStats implements OperationStatsMXBean {
+
+  // bucket i counts the calls that took between 2^i and 2^(i+1) - 1 nanoseconds:
+  private static final int BUCKETS = 64;
+
+  private final String name;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAdder verticies = new LongAdder();
+  private final LongAdder edges = new LongAdder();
+  private final LongAdder allocatedBytes = new LongAdder();
+  private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Creates empty metrics for an operation.
+   *
+   * @param name the name of the operation.
+   */
+  public OperationStats(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Adds one call of the operation to the totals.
+   *
+   * @param nanos how long the call took.
+   * @param verticiesTouched how many verticies the call visited.
+   * @param edgesTouched how many edges the call followed.
+   * @param bytes how many bytes the call allocated.
+   */
+  void record(long nanos, long verticiesTouched, long edgesTouched, long bytes) {
+    calls.increment();
+    totalNanos.add(nanos);
+    verticies.add(verticiesTouched);
+    edges.add(edgesTouched);
+    allocatedBytes.add(bytes);
+    histogram.incrementAndGet(63 - Long.numberOfLeadingZeros(Math.max(nanos, 1)));
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getCallCount() {
+    return calls.sum();
+  }
+
+  @Override
+  public long getTotalNanos() {
+    return totalNanos.sum();
+  }
+
+  @Override
+  public long getMeanNanos() {
+    long count = calls.sum();
+    return count == 0 ? 0 : totalNanos.sum() / count;
+  }
+
+  @Override
+  public long getMedianNanos() {
+    return getPercentileNanos(0.5);
+  }
+
+  @Override
+  public long getP99Nanos() {
+    return getPercentileNanos(0.99);
+  }
+
+  @Override
+  public long getVerticiesTouched() {
+    return verticies.sum();
+  }
+
+  @Override
+  public long getEdgesTouched() {
+    return edges.sum();
+  }
+
+  @Override
+  public long getAllocatedBytes() {
+    return allocatedBytes.sum();
+  }
+
+  /**
+   * Walks the histogram to the bucket that holds the given fraction of calls.
+   *
+   * @param fraction the percentile to find, between 0 and 1.
+   * @return the upper bound of the bucket in nanoseconds, or 0 if there have been no calls.
+   */
+  private long getPercentileNanos(double fraction) {
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = histogram.get(i);
+      total += counts[i];
+    }
+
+    long rank = (long) Math.ceil(total * fraction);
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+
+      if (seen >= rank && seen > 0) {
+        return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+      }
+    }
+
+    return 0;
+  }
+}
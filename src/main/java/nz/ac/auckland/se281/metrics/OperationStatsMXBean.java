@@ -0,0 +1,68 @@
+package nz.ac.auckland.se281.metrics;
+
+/** The metrics of a single graph operation, as exposed through JMX. */
+public interface OperationStatsMXBean {
+
+  /**
+   * Gets the name of the operation.
+   *
+   * @return the operation name.
+   */
+  String getName();
+
+  /**
+   * Gets how many times the operation has been called.
+   *
+   * @return the number of calls.
+   */
+  long getCallCount();
+
+  /**
+   * Gets the total time spent in the operation.
+   *
+   * @return the total latency in nanoseconds.
+   */
+  long getTotalNanos();
+
+  /**
+   * Gets the mean time spent in one call of the operation.
+   *
+   * @return the mean latency in nanoseconds.
+   */
+  long getMeanNanos();
+
+  /**
+   * Gets the median latency, to the upper bound of its power of two histogram bucket.
+   *
+   * @return the median latency in nanoseconds.
+   */
+  long getMedianNanos();
+
+  /**
+   * Gets the 99th percentile latency, to the upper bound of its power of two histogram bucket.
+   *
+   * @return the 99th percentile latency in nanoseconds.
+   */
+  long getP99Nanos();
+
+  /**
+   * Gets the total number of verticies the operation has visited over all calls.
+   *
+   * @return the number of verticies touched.
+   */
+  long getVerticiesTouched();
+
+  /**
+   * Gets the total number of edges the operation has followed over all calls.
+   *
+   * @return the number of edges touched.
+   */
+  long getEdgesTouched();
+
+  /**
+   * Gets the total number of bytes the calling threads allocated during the operation.
+   *
+   * @return the allocated bytes, or 0 if the JVM cannot measure allocation.
+   */
+  long getAllocatedBytes();
+}
@@ -1,8 +1,46 @@
 package nz.ac.auckland.se281;
 
 import static nz.ac.auckland.se281.Command.*;
-
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import nz.ac.auckland.se281.datastructures.Edge;
+import nz.ac.auckland.se281.datastructures.Graph;
+import nz.ac.auckland.se281.datastructures.GraphAnalysis;
+import nz.ac.auckland.se281.datastructures.GraphChanges;
+import nz.ac.auckland.se281.datastructures.GraphOption;
+import nz.ac.auckland.se281.datastructures.GraphTraverser;
+import nz.ac.auckland.se281.datastructures.GraphVisitor;
+import nz.ac.auckland.se281.datastructures.RelationProperties;
+import nz.ac.auckland.se281.io.CsrFile;
+import nz.ac.auckland.se281.io.GraphLoader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.Timeout;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -13,6 +51,8 @@ import org.junit.runners.Suite.SuiteClasses;
   MainTest.Task2.class, // Uncomment this line when you start Task 2
   MainTest.Task3.class, // Uncomment this line when you start Task 3
   MainTest.YourTests.class, // Uncomment this line to run your own tests
+  MainTest.GraphTests.class,
+  MainTest.ResultCacheTests.class,
 })
 public class MainTest {
   public static class Task1 extends CliTest {
@@ -518,5 +558,1123 @@ public class MainTest {
       assertContains("Successfully opened graph from file f.txt");
       assertContains("[0]");
     }
+
+    @Test
+    public void TY_stats_disabled() throws Exception {
+      runCommands(STATS);
+      assertContains("Metrics are disabled, restart with -Dgraph.metrics=true to collect them");
+      assertDoesNotContain("Error: no valid file open");
+    }
+
+    @Test
+    public void TY_list_verticies_edges_without_semicolons() throws Exception {
+      runCommands(OPEN_FILE, "i.txt", LIST_VERTICIES_EDGES);
+      assertContains("Successfully opened graph from file i.txt");
+      assertContains("\t100 -> 101");
+      assertContains("\t20 -> 21");
+      assertDoesNotContain("Exception");
+    }
+
+    @Test
+    public void TY_analyze_a() throws Exception {
+      runCommands(OPEN_FILE, "a.txt", ANALYZE);
+      assertContains("The graph is NOT reflexive");
+      assertContains("The graph is NOT symmetric");
+      assertContains("The graph is antisymmetric");
+      assertContains("The graph is NOT transitive");
+      assertContains("The graph is NOT an equivalence relation");
+      assertContains("Roots: [0]");
+      assertContains("Verticies: 6, edges: 5, self loops: 0");
+      assertContains("Out degree: min 0, max 3, mean 0.83");
+      assertContains("In degree: min 0, max 1");
+    }
+
+    @Test
+    public void TY_stats_shape_b() throws Exception {
+      runCommands(OPEN_FILE, "b.txt", STATS);
+      assertContains("Verticies: 7, edges: 17, self loops: 6");
+      assertContains("Degree: max out 3, max in 3, mean 2.43");
+      assertContains("Strongly connected components: 2");
+      assertContains("Out degree histogram:");
+      assertContains("\t2-3: 6");
+    }
+
+    @Test
+    public void TY_workspace_run_all() throws Exception {
+      runCommands(OPEN_WORKSPACE, ".", RUN_ALL, "check-reflexivity");
+      assertContains("Opened 9 graphs from folder .");
+      assertContains("== a.txt");
+      assertContains("== i.txt");
+      assertContains("The graph is reflexive");
+      assertContains("The graph is NOT reflexive");
+      assertDoesNotContain("Error: no valid file open");
+    }
+
+    @Test
+    public void TY_workspace_run_all_invalid() throws Exception {
+      runCommands(RUN_ALL, "INFO", OPEN_WORKSPACE, ".", RUN_ALL, "OPEN_FILE");
+      assertContains("Error: no workspace open");
+      assertContains("Error: \"OPEN_FILE\" cannot be run on every graph of a workspace");
+    }
+
+    @Test
+    public void TY_watch_keeps_properties() throws Exception {
+      runCommands(WATCH, OPEN_FILE, "c.txt", WATCH, CHECK_REFLEXIVITY, CHECK_EQUIVALENCE);
+      assertContains("Error: no valid file open");
+      assertContains("Watching file c.txt for changes");
+      assertContains("The graph is reflexive");
+      assertContains("The graph is an equivalence relation");
+      assertDoesNotContain("Reloaded graph from file");
+    }
+
+    @Test
+    public void TY_reachable_i() throws Exception {
+      runCommands(
+          OPEN_FILE,
+          "i.txt",
+          LIST_REACHABLE_VERTICIES,
+          OPEN_FILE,
+          "e.txt",
+          LIST_REACHABLE_VERTICIES);
+      assertContains("[0, 1, 2, 3, 10, 11, 12, 13, 20, 21, 100, 101]");
+      assertContains("[]");
+    }
+
+    @Test
+    public void TY_counterexample_first() throws Exception {
+      runCommands(OPEN_FILE, "b.txt", CHECK_TRANSITIVITY, CHECK_ANTISYMMETRY);
+      assertContains("The graph is NOT transitive");
+      assertContains("Counterexample: 0 -> 1 -> 2 has no edge 0 -> 2");
+      assertDoesNotContain("Counterexample: 1 -> 2 -> 3 has no edge 1 -> 3");
+      assertContains("Counterexample: 0 -> 1 and 1 -> 0");
+    }
+
+    @Test
+    public void TY_counterexample_smallest_first() throws Exception {
+      runCommands(OPEN_FILE, "c.txt", CHECK_ANTISYMMETRY);
+      assertContains("The graph is NOT antisymmetric");
+      assertContains("Counterexample: 1 -> 2 and 2 -> 1");
+      assertDoesNotContain("Counterexample: 1 -> 3 and 3 -> 1");
+    }
+
+    @Test
+    public void TY_counterexample_limit() throws Exception {
+      runCommands(OPEN_FILE, "a.txt", CHECK_SYMMETRY, "2", CHECK_REFLEXIVITY, "x");
+      assertContains("Counterexample: 0 -> 1 has no edge back");
+      assertContains("Counterexample: 0 -> 2 has no edge back");
+      assertDoesNotContain("Counterexample: 1 -> 3 has no edge back");
+      assertContains("Error: counterexample limit 'x' is not a whole number above 0");
+    }
+
+    @Test
+    public void TY_build_csr_b() throws Exception {
+      Path built = Path.of("testcases", "TY_build_csr_b.csr");
+      Files.deleteIfExists(built);
+      String source = Files.readString(Path.of("testcases", "b.txt"));
+
+      try {
+        runCommands(
+            BUILD_CSR,
+            "b.txt",
+            "TY_build_csr_b.csr",
+            OPEN_FILE,
+            "TY_build_csr_b.csr",
+            LIST_ROOT_VERTICIES,
+            CHECK_TRANSITIVITY,
+            BUILD_CSR,
+            "missing.txt",
+            "missing.csr",
+            BUILD_CSR,
+            "c.txt",
+            "TY_build_csr_b.csr",
+            BUILD_CSR,
+            "c.txt",
+            "b.txt",
+            BUILD_CSR,
+            "c.txt",
+            "../TY_build_csr_b.csr",
+            BUILD_CSR,
+            "../pom.xml",
+            "pom.csr");
+        assertContains("Built graph file TY_build_csr_b.csr from file b.txt");
+        assertContains("[6]");
+        assertContains("Counterexample: 0 -> 1 -> 2 has no edge 0 -> 2");
+        assertContains("Error: file 'missing.txt' not found in `testcases` folder");
+        assertContains(
+            "Error: graph file TY_build_csr_b.csr already exists, and is not overwritten");
+        assertContains("Error: graph file b.txt already exists, and is not overwritten");
+        assertContains(
+            "Error: graph file ../TY_build_csr_b.csr must be in an existing folder of `testcases`");
+        assertContains("Error: file '../pom.xml' not found in `testcases` folder");
+        assertEquals(source, Files.readString(Path.of("testcases", "b.txt")));
+        assertFalse(Files.exists(Path.of("TY_build_csr_b.csr")));
+      } finally {
+        Files.deleteIfExists(built);
+      }
+    }
+  }
+
+  public static class GraphTests {
+    @Rule public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+
+    /**
+     * Creates the verticies 0 up to but not including n.
+     *
+     * @param n the number of verticies.
+     * @return the verticies in numerical order.
+     */
+    private static List<Integer> range(int n) {
+      List<Integer> verticies = new ArrayList<>();
+
+      for (int i = 0; i < n; i++) {
+        verticies.add(i);
+      }
+
+      return verticies;
+    }
+
+    /**
+     * Creates random edges between n verticies, some of them repeated.
+     *
+     * @param seed the seed of the random numbers.
+     * @param n the number of verticies.
+     * @param m the number of edges.
+     * @return the edges.
+     */
+    private static List<Edge<Integer>> randomEdges(long seed, int n, int m) {
+      Random random = new Random(seed);
+      List<Edge<Integer>> edges = new ArrayList<>();
+
+      for (int i = 0; i < m; i++) {
+        edges.add(new Edge<>(random.nextInt(n), random.nextInt(n)));
+      }
+
+      return edges;
+    }
+
+    /**
+     * Builds a graph of the verticies 0 up to but not including n.
+     *
+     * @param n the number of verticies.
+     * @param edges the edges.
+     * @param options the optional structures to build.
+     * @return the graph.
+     */
+    private static Graph<Integer> build(
+        int n, List<Edge<Integer>> edges, Set<GraphOption> options) {
+      return new Graph<>(new HashSet<>(range(n)), new HashSet<>(edges), options);
+    }
+
+    @Test
+    public void TY_hash_row_longer_than_hash_bits() {
+      // one vertex with an edge to every even vertex, far more than 16 bits of hash can spread:
+      int degree = 200000;
+      int n = 2 * degree + 1;
+      int[] offsets = new int[n + 1];
+      int[] targets = new int[degree];
+
+      for (int i = 0; i < degree; i++) {
+        targets[i] = 2 * (i + 1);
+      }
+
+      Arrays.fill(offsets, 1, n + 1, degree);
+      Graph<Integer> graph =
+          new Graph<>(range(n), offsets, targets, EnumSet.noneOf(GraphOption.class));
+
+      for (int i = 0; i < n; i++) {
+        assertEquals("edge 0 -> " + i, i > 0 && i % 2 == 0, graph.hasEdge(0, i));
+      }
+    }
+
+    @Test
+    public void TY_hash_rows_match_neighbours() {
+      // few enough verticies for long rows, but too many for the bit matrix:
+      int n = 9000;
+      Graph<Integer> graph =
+          build(n, randomEdges(27, n / 100, 40000), EnumSet.noneOf(GraphOption.class));
+
+      for (int source = 0; source < n / 100; source++) {
+        Set<Integer> neighbours = new HashSet<>(graph.getNeighbours(source));
+        assertTrue(neighbours.size() >= 32);
+
+        for (int destination = 0; destination < n; destination++) {
+          assertEquals(neighbours.contains(destination), graph.hasEdge(source, destination));
+        }
+      }
+    }
+
+    @Test
+    public void TY_iterators_match_search_lists() {
+      for (int seed = 0; seed < 20; seed++) {
+        Graph<Integer> graph =
+            build(60, randomEdges(seed, 60, 90), EnumSet.of(GraphOption.INDEX_INCOMING));
+        List<Integer> breadthFirst = graph.iterativeBreadthFirstSearch();
+        List<Integer> depthFirst = graph.iterativeDepthFirstSearch();
+        List<Integer> iterated = new ArrayList<>();
+        graph.breadthFirstIterator().forEachRemaining(iterated::add);
+        assertEquals(breadthFirst, iterated);
+        iterated.clear();
+        graph.depthFirstIterator().forEachRemaining(iterated::add);
+        assertEquals(depthFirst, iterated);
+        assertEquals(breadthFirst, graph.breadthFirstStream().collect(Collectors.toList()));
+        assertEquals(depthFirst, graph.depthFirstStream().collect(Collectors.toList()));
+      }
+    }
+
+    @Test
+    public void TY_search_until_first_match() {
+      Graph<Integer> graph =
+          build(60, randomEdges(31, 60, 90), EnumSet.of(GraphOption.INDEX_INCOMING));
+      List<Integer> breadthFirst = graph.iterativeBreadthFirstSearch();
+      List<Integer> depthFirst = graph.iterativeDepthFirstSearch();
+
+      for (int remainder = 0; remainder < 7; remainder++) {
+        int wanted = remainder;
+        Optional<Integer> first =
+            breadthFirst.stream().filter(vertex -> vertex % 7 == wanted).findFirst();
+        assertEquals(first, graph.breadthFirstSearchUntil(vertex -> vertex % 7 == wanted));
+        first = depthFirst.stream().filter(vertex -> vertex % 7 == wanted).findFirst();
+        assertEquals(first, graph.depthFirstSearchUntil(vertex -> vertex % 7 == wanted));
+      }
+
+      assertEquals(Optional.empty(), graph.breadthFirstSearchUntil(vertex -> vertex < 0));
+      assertEquals(
+          breadthFirst.subList(0, 5),
+          graph.breadthFirstStream().limit(5).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void TY_traverser_matches_searches() {
+      Graph<Integer> graph =
+          build(60, randomEdges(32, 60, 90), EnumSet.of(GraphOption.INDEX_INCOMING));
+      GraphTraverser traverser = graph.newTraverser();
+      List<Integer> discovered = new ArrayList<>();
+      List<Integer> finished = new ArrayList<>();
+      int[] edges = new int[1];
+      GraphVisitor visitor =
+          new GraphVisitor() {
+            @Override
+            public void onDiscover(int vertex) {
+              discovered.add(graph.getVerticies().get(vertex));
+            }
+
+            @Override
+            public void onEdge(int source, int destination) {
+              assertTrue(graph.hasEdge(source, destination));
+              edges[0]++;
+            }
+
+            @Override
+            public void onFinish(int vertex) {
+              assertTrue(discovered.contains(graph.getVerticies().get(vertex)));
+              finished.add(graph.getVerticies().get(vertex));
+            }
+          };
+
+      // run each traversal twice, as the traverser reuses its buffers:
+      for (int run = 0; run < 2; run++) {
+        discovered.clear();
+        finished.clear();
+        edges[0] = 0;
+        traverser.breadthFirst(visitor);
+        assertEquals(graph.iterativeBreadthFirstSearch(), discovered);
+        assertEquals(discovered.size(), finished.size());
+
+        int expectedEdges = 0;
+
+        for (int vertex : discovered) {
+          expectedEdges += graph.getNeighbours(vertex).size();
+        }
+
+        assertEquals(expectedEdges, edges[0]);
+
+        discovered.clear();
+        finished.clear();
+        traverser.depthFirst(visitor);
+        assertEquals(graph.iterativeDepthFirstSearch(), discovered);
+        assertEquals(new HashSet<>(discovered), new HashSet<>(finished));
+      }
+    }
+
+    @Test
+    public void TY_names_sharing_a_number_found_apart() throws IOException {
+      Path folder = Files.createTempDirectory("names");
+
+      try {
+        Path source = folder.resolve("graph.txt");
+        Files.writeString(source, "digraph test {\n1 -> 01;\n01 -> 001;\n001 -> 7;\n7 -> 1;\n}\n");
+        Path built = folder.resolve("graph.csr");
+        CsrFile.build(source, built);
+
+        for (Path file : List.of(source, built)) {
+          Graph<String> graph = GraphLoader.load(file);
+          assertEquals(List.of("1", "01", "001", "7"), graph.getVerticies());
+          assertEquals(0, graph.getIndex("1"));
+          assertEquals(1, graph.getIndex("01"));
+          assertEquals(2, graph.getIndex("001"));
+          assertEquals(3, graph.getIndex("7"));
+          assertEquals(-1, graph.getIndex("0001"));
+          assertEquals(-1, graph.getIndex("+1"));
+          assertEquals(-1, graph.getIndex("2"));
+          assertTrue(graph.hasEdge("01", "001"));
+          assertFalse(graph.hasEdge("001", "01"));
+          assertEquals(List.of("01"), graph.getNeighbours("1"));
+        }
+      } finally {
+        deleteFolder(folder);
+      }
+    }
+
+    @Test
+    public void TY_long_names_kept_in_built_file() throws IOException {
+      Path folder = Files.createTempDirectory("names");
+
+      try {
+        // the longest names that can be built, padded out with zeros:
+        Path source = folder.resolve("graph.txt");
+        Files.writeString(source, "digraph test {\n000000005 -> 5;\n5 -> 000000050;\n}\n");
+        Path built = folder.resolve("graph.csr");
+        CsrFile.build(source, built);
+
+        Graph<String> graph = GraphLoader.load(built);
+        assertEquals(List.of("000000005", "5", "000000050"), graph.getVerticies());
+        assertEquals(0, graph.getIndex("000000005"));
+        assertEquals(-1, graph.getIndex("0000000005"));
+        assertTrue(graph.hasEdge("5", "000000050"));
+
+        // a longer name is refused rather than written wrongly:
+        Files.writeString(source, "digraph test {\n" + "0".repeat(200) + "5 -> 5;\n}\n");
+        Path refused = folder.resolve("refused.csr");
+
+        try {
+          CsrFile.build(source, refused);
+          fail("Built a graph with a name of 201 digits");
+        } catch (IOException e) {
+          assertFalse(Files.exists(refused));
+        }
+      } finally {
+        deleteFolder(folder);
+      }
+    }
+
+    @Test
+    public void TY_watch_reloads_edits() throws Exception {
+      Path file = GraphCalculator.TESTCASES.resolve("TY_watch_reloads_edits.txt");
+      ByteArrayOutputStream printed = new ByteArrayOutputStream();
+
+      try {
+        Files.writeString(file, "digraph test {\n0 -> 0;\n0 -> 1;\n1 -> 1;\n}\n");
+        GraphCalculator calculator =
+            new GraphCalculator("TY_watch_reloads_edits.txt")
+                .withOutput(new PrintStream(printed, true))
+                .watch();
+
+        // saving the same graph again prints nothing:
+        Files.writeString(file, "digraph test {\n0 -> 1;\n1 -> 1;\n0 -> 0;\n}\n");
+        assertTrue(calculator.reload() == calculator);
+        assertEquals("", printed.toString());
+
+        Files.writeString(file, "digraph test {\n0 -> 0;\n0 -> 1;\n1 -> 0;\n1 -> 1;\n}\n");
+        calculator = calculator.reload();
+        String output = printed.toString();
+        assertTrue(
+            output.contains(
+                "Reloaded graph from file TY_watch_reloads_edits.txt: 1 edges added, 0 edges"
+                    + " removed"));
+        assertTrue(output.contains("The graph is symmetric"));
+        assertTrue(output.contains("The graph is an equivalence relation"));
+
+        // a vertex on its own is not an edge, but still changes the graph:
+        printed.reset();
+        Files.writeString(file, "digraph test {\n0 -> 0;\n0 -> 1;\n1 -> 0;\n1 -> 1;\n2;\n}\n");
+        calculator = calculator.reload();
+        output = printed.toString();
+        assertTrue(output.contains("0 edges added, 0 edges removed"));
+        assertTrue(output.contains("The graph is NOT reflexive"));
+      } finally {
+        Files.deleteIfExists(file);
+      }
+    }
+
+    /**
+     * Brings properties up to date through each graph in turn, checking that they always match the
+     * properties counted from the whole graph.
+     *
+     * @param graphs the graphs, each an edit of the one before.
+     */
+    @SafeVarargs
+    private static void assertUpdates(Graph<Integer>... graphs) {
+      RelationProperties properties = RelationProperties.of(graphs[0]);
+
+      for (int i = 1; i < graphs.length; i++) {
+        GraphChanges<Integer> changes = GraphChanges.between(graphs[i - 1], graphs[i]);
+        properties = properties.update(graphs[i - 1], graphs[i], changes);
+        assertEquals("edit " + i, RelationProperties.of(graphs[i]), properties);
+      }
+    }
+
+    /**
+     * Builds a graph that indexes its incoming edges, as the properties need to be updated.
+     *
+     * @param n the number of verticies.
+     * @param edges the edges, each as a source followed by a destination.
+     * @return the graph.
+     */
+    private static Graph<Integer> relation(int n, int... edges) {
+      List<Edge<Integer>> list = new ArrayList<>();
+
+      for (int i = 0; i < edges.length; i += 2) {
+        list.add(new Edge<>(edges[i], edges[i + 1]));
+      }
+
+      return build(n, list, EnumSet.of(GraphOption.INDEX_INCOMING));
+    }
+
+    @Test
+    public void TY_properties_updated_without_shortcut() {
+      // removing the shortcut of a path, then putting it back:
+      Graph<Integer> transitive = relation(3, 0, 1, 1, 2, 0, 2);
+      Graph<Integer> broken = relation(3, 0, 1, 1, 2);
+      assertTrue(RelationProperties.of(transitive).isTransitive());
+      assertFalse(RelationProperties.of(broken).isTransitive());
+      assertUpdates(transitive, broken, transitive);
+    }
+
+    @Test
+    public void TY_properties_updated_with_new_path() {
+      // an edge after the end of a path, then one before its start, then a shortcut for each:
+      assertUpdates(
+          relation(4, 1, 2),
+          relation(4, 1, 2, 2, 3),
+          relation(4, 1, 2, 2, 3, 1, 3),
+          relation(4, 0, 1, 1, 2, 2, 3, 1, 3),
+          relation(4, 0, 1, 1, 2, 2, 3, 1, 3, 0, 2, 0, 3));
+    }
+
+    @Test
+    public void TY_properties_updated_with_self_loops() {
+      assertUpdates(
+          relation(2, 0, 1),
+          relation(2, 0, 0, 0, 1),
+          relation(2, 0, 0, 0, 1, 1, 1),
+          relation(2, 0, 0, 0, 1, 1, 0, 1, 1),
+          relation(2, 0, 1, 1, 0, 1, 1),
+          relation(2, 1, 0));
+    }
+
+    @Test
+    public void TY_properties_updated_as_verticies_change() {
+      // verticies with and without edges coming and going:
+      assertUpdates(
+          relation(2, 0, 0, 1, 1),
+          relation(3, 0, 0, 1, 1),
+          relation(4, 0, 0, 1, 1, 2, 3, 3, 2),
+          relation(5, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 0, 4),
+          relation(2, 0, 0, 1, 1),
+          relation(1, 0, 0));
+    }
+
+    @Test
+    public void TY_properties_updated_through_random_edits() {
+      Random random = new Random(46);
+      List<Edge<Integer>> edges = new ArrayList<>();
+      Graph<Integer> previous = build(6, edges, EnumSet.of(GraphOption.INDEX_INCOMING));
+      RelationProperties properties = RelationProperties.of(previous);
+
+      for (int edit = 0; edit < 500; edit++) {
+        // add or remove a few edges at a time, with few enough verticies to often stay transitive:
+        for (int i = random.nextInt(3); i >= 0; i--) {
+          Edge<Integer> edge = new Edge<>(random.nextInt(6), random.nextInt(6));
+
+          if (!edges.remove(edge)) {
+            edges.add(edge);
+          }
+        }
+
+        Graph<Integer> next = build(6, edges, EnumSet.of(GraphOption.INDEX_INCOMING));
+        properties = properties.update(previous, next, GraphChanges.between(previous, next));
+        assertEquals("edit " + edit, RelationProperties.of(next), properties);
+        previous = next;
+      }
+    }
+
+    @Test
+    public void TY_parallel_reachable_matches_search() {
+      // enough edges to search on the fork/join pool, in two halves only one of which is reached:
+      int n = 20000;
+      int half = n / 2;
+
+      for (long seed = 0; seed < 4; seed++) {
+        Random random = new Random(seed);
+        List<Edge<Integer>> edges = new ArrayList<>();
+
+        for (int i = 0; i < 2 * half; i++) {
+          // a few roots lead into a sparse half of long paths, deep enough to split the stacks:
+          int source = random.nextInt(half);
+          edges.add(new Edge<>(source, 4 + random.nextInt(half / 4 - 4)));
+          edges.add(new Edge<>(source, source + 1 < half ? source + 1 : 4));
+        }
+
+        for (int i = half; i < n; i++) {
+          // the other half is a cycle with chords, so that none of it is a root:
+          edges.add(new Edge<>(i, i + 1 < n ? i + 1 : half));
+          edges.add(new Edge<>(i, half + random.nextInt(half)));
+        }
+
+        for (Set<GraphOption> options :
+            List.of(EnumSet.noneOf(GraphOption.class), EnumSet.of(GraphOption.PACK_ROWS))) {
+          Graph<Integer> graph = build(n, edges, options);
+          assertTrue(graph.getEdgeCount() >= 1 << 15);
+
+          Set<Integer> searched = graph.breadthFirstStream().collect(Collectors.toSet());
+          List<Integer> expected = new ArrayList<>(new TreeSet<>(searched));
+          assertTrue(expected.size() > half / 2 && expected.size() <= half);
+
+          // the order tasks run in varies, so search again to give a race more than one chance:
+          for (int run = 0; run < 5; run++) {
+            assertEquals("seed " + seed, expected, new ArrayList<>(graph.getReachable()));
+          }
+        }
+      }
+    }
+
+    @Test
+    public void TY_rows_copied_from_the_caller() {
+      int[] offsets = {0, 3, 4, 4};
+      int[] targets = {1, 1, 2, 0};
+      Graph<Integer> graph =
+          new Graph<>(range(3), offsets, targets, EnumSet.of(GraphOption.COUNT_MULTIPLICITY));
+
+      // the repeated edge is collapsed in the graph's own rows, not in the caller's:
+      assertArrayEquals(new int[] {0, 3, 4, 4}, offsets);
+      assertArrayEquals(new int[] {1, 1, 2, 0}, targets);
+
+      Arrays.fill(offsets, 0);
+      Arrays.fill(targets, 2);
+      assertEquals(3, graph.getEdgeCount());
+      assertEquals(List.of(1, 2), graph.getNeighbours(0));
+      assertEquals(List.of(0), graph.getNeighbours(1));
+      assertEquals(2, graph.getMultiplicity(0, 1));
+    }
+
+    @Test
+    public void TY_multiplicity_counts_repeated_edges() {
+      int n = 200;
+      List<Edge<Integer>> edges = randomEdges(35, n, 3000);
+      int[][] counts = new int[n][n];
+
+      for (Edge<Integer> edge : edges) {
+        counts[edge.getSource()][edge.getDestination()]++;
+      }
+
+      // lay the edges out in sorted rows that keep every repeat, as a loader would:
+      int[] offsets = new int[n + 1];
+      int[] targets = new int[edges.size()];
+
+      for (int source = 0; source < n; source++) {
+        offsets[source + 1] = offsets[source];
+
+        for (int destination = 0; destination < n; destination++) {
+          for (int i = 0; i < counts[source][destination]; i++) {
+            targets[offsets[source + 1]++] = destination;
+          }
+        }
+      }
+
+      Graph<Integer> counted =
+          new Graph<>(range(n), offsets, targets, EnumSet.of(GraphOption.COUNT_MULTIPLICITY));
+      Graph<Integer> plain = build(n, edges, EnumSet.noneOf(GraphOption.class));
+      assertEquals(new HashSet<>(edges).size(), counted.getEdgeCount());
+      assertEquals(plain.getEdgeCount(), counted.getEdgeCount());
+      assertEquals(plain.isTransitive(), counted.isTransitive());
+      assertEquals(plain.isSymmetric(), counted.isSymmetric());
+      assertEquals(plain.getRoots(), counted.getRoots());
+
+      for (int source = 0; source < n; source++) {
+        assertEquals(plain.getNeighbours(source), counted.getNeighbours(source));
+
+        for (int destination = 0; destination < n; destination++) {
+          int count = counts[source][destination];
+          assertEquals(count, counted.getMultiplicity(source, destination));
+          assertEquals(Math.min(count, 1), plain.getMultiplicity(source, destination));
+        }
+      }
+    }
+
+    /**
+     * Checks that two graphs have the same edges among their first n verticies, and give the same
+     * verdicts and counterexamples for every property.
+     *
+     * @param n the number of verticies to compare the edges of.
+     * @param expected the graph built the default way.
+     * @param actual the graph built another way.
+     */
+    private static void assertSameRelation(int n, Graph<Integer> expected, Graph<Integer> actual) {
+      for (int source = 0; source < n; source++) {
+        assertEquals(expected.getNeighbours(source), actual.getNeighbours(source));
+      }
+
+      // look edges up from a spread of about a hundred sources, which keeps large graphs quick:
+      for (int source = 0; source < n; source += Math.max(1, n / 100)) {
+        for (int destination = 0; destination < n; destination++) {
+          assertEquals(
+              expected.hasEdge(source, destination), actual.hasEdge(source, destination));
+        }
+      }
+
+      assertEquals(expected.isReflexive(), actual.isReflexive());
+      assertEquals(expected.isSymmetric(), actual.isSymmetric());
+      assertEquals(expected.isAntiSymmetric(), actual.isAntiSymmetric());
+      assertEquals(expected.isTransitive(), actual.isTransitive());
+      assertEquals(expected.isEquivalence(), actual.isEquivalence());
+
+      assertEquals(
+          expected.findReflexivityCounterexamples(1000),
+          actual.findReflexivityCounterexamples(1000));
+      assertEquals(
+          expected.findSymmetryCounterexamples(1000), actual.findSymmetryCounterexamples(1000));
+      assertEquals(
+          expected.findAntiSymmetryCounterexamples(1000),
+          actual.findAntiSymmetryCounterexamples(1000));
+      assertEquals(
+          expected.findTransitivityCounterexamples(1000),
+          actual.findTransitivityCounterexamples(1000));
+
+      // and a check fails exactly when it has a counterexample:
+      assertEquals(actual.isSymmetric(), actual.findSymmetryCounterexamples(1).isEmpty());
+      assertEquals(actual.isAntiSymmetric(), actual.findAntiSymmetryCounterexamples(1).isEmpty());
+      assertEquals(actual.isTransitive(), actual.findTransitivityCounterexamples(1).isEmpty());
+    }
+
+    @Test
+    public void TY_bit_matrix_matches_rows() {
+      // 130 verticies spread over three words a row, with enough edges to be laid out as a matrix:
+      int n = 130;
+      List<List<Edge<Integer>>> relations = new ArrayList<>();
+      relations.add(randomEdges(41, n, 3000));
+
+      // an equivalence of blocks of ten, and a strict order, so that some checks pass:
+      List<Edge<Integer>> equivalence = new ArrayList<>();
+      List<Edge<Integer>> order = new ArrayList<>();
+
+      for (int a = 0; a < n; a++) {
+        for (int b = 0; b < n; b++) {
+          if (a / 10 == b / 10) {
+            equivalence.add(new Edge<>(a, b));
+          }
+
+          if (a < b) {
+            order.add(new Edge<>(a, b));
+          }
+        }
+      }
+
+      relations.add(equivalence);
+      relations.add(order);
+
+      // the same edges with far too many verticies for a matrix, each of the extra verticies with
+      // only an edge to itself, which leaves every verdict as it was:
+      int padded = 9000;
+
+      for (List<Edge<Integer>> edges : relations) {
+        List<Edge<Integer>> sparse = new ArrayList<>(edges);
+
+        for (int vertex = n; vertex < padded; vertex++) {
+          sparse.add(new Edge<>(vertex, vertex));
+        }
+
+        Set<GraphOption> options = EnumSet.of(GraphOption.INDEX_INCOMING);
+        assertSameRelation(n, build(padded, sparse, options), build(n, edges, options));
+        assertSameRelation(
+            n,
+            build(padded, sparse, EnumSet.noneOf(GraphOption.class)),
+            build(n, edges, EnumSet.noneOf(GraphOption.class)));
+      }
+    }
+
+    /**
+     * Creates relations on n verticies that pass and fail each check in different places, for
+     * comparing graphs built in different ways: random edges, an equivalence of blocks of sixteen,
+     * the same equivalence with one edge out of the last block, and random edges both ways.
+     *
+     * @param seed the seed of the random numbers.
+     * @param n the number of verticies, a multiple of sixteen.
+     * @return the edges of each relation.
+     */
+    private static List<List<Edge<Integer>>> sampleRelations(long seed, int n) {
+      List<List<Edge<Integer>>> relations = new ArrayList<>();
+      relations.add(randomEdges(seed, n, 2 * n));
+
+      List<Edge<Integer>> equivalence = new ArrayList<>();
+
+      for (int a = 0; a < n; a++) {
+        for (int b = a - a % 16; b < a - a % 16 + 16; b++) {
+          equivalence.add(new Edge<>(a, b));
+        }
+      }
+
+      relations.add(equivalence);
+
+      List<Edge<Integer>> broken = new ArrayList<>(equivalence);
+      broken.add(new Edge<>(n - 1, 0));
+      relations.add(broken);
+
+      List<Edge<Integer>> symmetric = new ArrayList<>();
+
+      for (Edge<Integer> edge : randomEdges(seed + 1, n, n)) {
+        symmetric.add(edge);
+        symmetric.add(new Edge<>(edge.getDestination(), edge.getSource()));
+      }
+
+      relations.add(symmetric);
+      return relations;
+    }
+
+    /**
+     * Checks that two graphs of the same edges agree on every property, their roots, the
+     * verticies they reach and the order of their searches.
+     *
+     * @param n the number of verticies.
+     * @param expected the graph built the default way.
+     * @param actual the graph built another way.
+     */
+    private static void assertSameGraph(int n, Graph<Integer> expected, Graph<Integer> actual) {
+      assertSameRelation(n, expected, actual);
+      assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+      assertEquals(new ArrayList<>(expected.getRoots()), new ArrayList<>(actual.getRoots()));
+      assertEquals(
+          new ArrayList<>(expected.getReachable()), new ArrayList<>(actual.getReachable()));
+      GraphAnalysis<Integer> expectedAnalysis = expected.analyze();
+      GraphAnalysis<Integer> actualAnalysis = actual.analyze();
+      assertEquals(
+          new ArrayList<>(expectedAnalysis.getRoots()), new ArrayList<>(actualAnalysis.getRoots()));
+      assertEquals(expectedAnalysis.isTransitive(), actualAnalysis.isTransitive());
+      assertEquals(expectedAnalysis.isEquivalence(), actualAnalysis.isEquivalence());
+      assertEquals(
+          expected.breadthFirstStream().collect(Collectors.toList()),
+          actual.breadthFirstStream().collect(Collectors.toList()));
+      assertEquals(
+          expected.depthFirstStream().collect(Collectors.toList()),
+          actual.depthFirstStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void TY_locality_order_matches_numerical_order() {
+      int n = 1024;
+
+      for (List<Edge<Integer>> edges : sampleRelations(43, n)) {
+        assertSameGraph(
+            n,
+            build(n, edges, EnumSet.of(GraphOption.INDEX_INCOMING)),
+            build(
+                n, edges, EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY)));
+        assertSameGraph(
+            n,
+            build(n, edges, EnumSet.noneOf(GraphOption.class)),
+            build(n, edges, EnumSet.of(GraphOption.ORDER_FOR_LOCALITY)));
+      }
+    }
+
+    @Test
+    public void TY_off_heap_rows_match_heap_rows() {
+      int n = 1024;
+
+      for (List<Edge<Integer>> edges : sampleRelations(44, n)) {
+        Set<GraphOption> options =
+            EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY);
+        Set<GraphOption> offHeap = EnumSet.copyOf(options);
+        offHeap.add(GraphOption.OFF_HEAP);
+        assertSameGraph(n, build(n, edges, options), build(n, edges, offHeap));
+      }
+
+      // a row long enough that the heap graph hashes it, while off the heap it is binary searched:
+      int m = 9000;
+      List<Edge<Integer>> edges = randomEdges(44, m / 100, 40000);
+      Graph<Integer> heap = build(m, edges, EnumSet.noneOf(GraphOption.class));
+      Graph<Integer> offHeap = build(m, edges, EnumSet.of(GraphOption.OFF_HEAP));
+      assertSameGraph(m, heap, offHeap);
+
+      for (int source = 0; source < m / 100; source++) {
+        for (int destination = 0; destination < m; destination++) {
+          assertEquals(heap.hasEdge(source, destination), offHeap.hasEdge(source, destination));
+        }
+      }
+    }
+
+    /**
+     * Deletes a folder and everything in it.
+     *
+     * @param folder the folder to delete.
+     * @throws IOException if a file cannot be deleted.
+     */
+    private static void deleteFolder(Path folder) throws IOException {
+      try (Stream<Path> files = Files.walk(folder)) {
+        files
+            .sorted((a, b) -> b.compareTo(a))
+            .forEach(
+                file -> {
+                  try {
+                    Files.delete(file);
+                  } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                  }
+                });
+      }
+    }
+
+    @Test
+    public void TY_csr_file_matches_dot_file() throws IOException {
+      Path folder = Files.createTempDirectory("csr");
+
+      try {
+        // repeated edges, and names with leading zeros that share a number with another vertex:
+        StringBuilder dot = new StringBuilder("digraph test {\n");
+
+        for (Edge<Integer> edge : randomEdges(45, 300, 4500)) {
+          int from = edge.getSource();
+          dot.append(from % 50 == 7 ? "0" + from : "" + from);
+          dot.append(" -> ").append(edge.getDestination()).append(";\n");
+        }
+
+        Path source = folder.resolve("graph.txt");
+        Files.writeString(source, dot.append("}\n"));
+
+        // a run of one edge per spill is too many runs to merge at once, even once merged:
+        Path runs = Files.createDirectory(folder.resolve("runs"));
+        Path built = folder.resolve("graph.csr");
+        CsrFile.build(source, built, runs, 1);
+
+        try (Stream<Path> left = Files.list(runs)) {
+          assertEquals(0, left.count());
+        }
+
+        Set<GraphOption> options =
+            EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY);
+        Graph<String> expected = GraphLoader.load(source, options);
+        Graph<String> actual = GraphLoader.load(built, options);
+        assertTrue(CsrFile.isCsrFile(built));
+        assertEquals(expected.getVerticies(), actual.getVerticies());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+
+        for (String vertex : expected.getVerticies()) {
+          assertEquals(expected.getNeighbours(vertex), actual.getNeighbours(vertex));
+        }
+
+        assertEquals(expected.isReflexive(), actual.isReflexive());
+        assertEquals(expected.isSymmetric(), actual.isSymmetric());
+        assertEquals(expected.isAntiSymmetric(), actual.isAntiSymmetric());
+        assertEquals(expected.isTransitive(), actual.isTransitive());
+        assertEquals(
+            expected.findTransitivityCounterexamples(100),
+            actual.findTransitivityCounterexamples(100));
+        assertEquals(new ArrayList<>(expected.getRoots()), new ArrayList<>(actual.getRoots()));
+
+        // the mapped graph has no incoming index, which would take heap for every edge:
+        try {
+          actual.getPredecessorIndices(0);
+          fail("A mapped graph should not index its incoming edges");
+        } catch (IllegalStateException e) {
+          // expected.
+        }
+      } finally {
+        deleteFolder(folder);
+      }
+    }
+
+    @Test
+    public void TY_packed_rows_match_plain_rows() {
+      int n = 1024;
+
+      for (List<Edge<Integer>> edges : sampleRelations(47, n)) {
+        Set<GraphOption> options =
+            EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY);
+        Set<GraphOption> packed = EnumSet.copyOf(options);
+        packed.add(GraphOption.PACK_ROWS);
+        assertSameGraph(n, build(n, edges, options), build(n, edges, packed));
+        packed.add(GraphOption.OFF_HEAP);
+        assertSameGraph(n, build(n, edges, options), build(n, edges, packed));
+      }
+
+      // rows that span many blocks, with gaps from one up to the whole range of verticies:
+      int m = 30000;
+      List<Edge<Integer>> edges = new ArrayList<>(randomEdges(47, m, 10000));
+
+      for (int destination = 0; destination < m; destination += 3) {
+        edges.add(new Edge<>(0, destination));
+        edges.add(new Edge<>(m - 1, m - 1 - destination / 3));
+      }
+
+      Graph<Integer> plain = build(m, edges, EnumSet.of(GraphOption.INDEX_INCOMING));
+      Graph<Integer> packed =
+          build(m, edges, EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.PACK_ROWS));
+      assertEquals(plain.getEdgeCount(), packed.getEdgeCount());
+
+      for (int source = 0; source < m; source++) {
+        assertEquals(plain.getNeighbours(source), packed.getNeighbours(source));
+      }
+
+      for (int destination = 0; destination < m; destination++) {
+        assertEquals(plain.hasEdge(0, destination), packed.hasEdge(0, destination));
+        assertEquals(plain.hasEdge(m - 1, destination), packed.hasEdge(m - 1, destination));
+      }
+
+      assertEquals(plain.isSymmetric(), packed.isSymmetric());
+      assertEquals(plain.isTransitive(), packed.isTransitive());
+      assertEquals(new ArrayList<>(plain.getRoots()), new ArrayList<>(packed.getRoots()));
+    }
+
+    @Test
+    public void TY_counterexamples_found_where_the_check_fails() {
+      // transitive cliques of sixteen, with one edge out of the last clique back to the first:
+      int n = 160000;
+      int[] offsets = new int[n + 1];
+      int[] targets = new int[16 * n + 1];
+      int edges = 0;
+
+      for (int vertex = 0; vertex < n; vertex++) {
+        if (vertex == n - 1) {
+          targets[edges++] = 0;
+        }
+
+        for (int other = vertex - vertex % 16; other < vertex - vertex % 16 + 16; other++) {
+          targets[edges++] = other;
+        }
+
+        offsets[vertex + 1] = edges;
+      }
+
+      Graph<Integer> graph =
+          new Graph<>(
+              range(n),
+              offsets,
+              targets,
+              EnumSet.of(GraphOption.INDEX_INCOMING, GraphOption.ORDER_FOR_LOCALITY));
+      assertTrue(graph.isReflexive());
+      assertFalse(graph.isTransitive());
+      List<List<Integer>> found = graph.findTransitivityCounterexamples(20);
+      assertEquals(20, found.size());
+      assertEquals(List.of(n - 16, n - 1, 0), found.get(0));
+
+      // every path without a shortcut uses the edge back to the first clique:
+      for (List<Integer> path : found) {
+        assertTrue(
+            path.toString(),
+            path.subList(0, 2).equals(List.of(n - 1, 0))
+                || path.subList(1, 3).equals(List.of(n - 1, 0)));
+        assertFalse(graph.hasEdge(path.get(0), path.get(2)));
+      }
+
+      assertEquals(List.of(List.of(n - 1, 0)), graph.findSymmetryCounterexamples(20));
+    }
+  }
+
+  /** Tests of the cache of outputs on disk, in a folder of their own. */
+  public static class ResultCacheTests {
+    @Rule public Timeout timeout = new Timeout(10, TimeUnit.SECONDS);
+
+    private Path folder;
+
+    private int runs;
+
+    @Before
+    public void setUp() throws IOException {
+      folder = Files.createTempDirectory("cache");
+      runs = 0;
+    }
+
+    @After
+    public void tearDown() throws IOException {
+      GraphTests.deleteFolder(folder);
+    }
+
+    /**
+     * Prints the output of a query through a cache, counting each time the query is run.
+     *
+     * @param cache the cache to print through.
+     * @param fingerprint the fingerprint of the graph.
+     * @param query the name of the query.
+     * @param output what the query prints.
+     * @return what was printed.
+     */
+    private String print(ResultCache cache, String fingerprint, String query, String output) {
+      ByteArrayOutputStream printed = new ByteArrayOutputStream();
+      cache.print(
+          fingerprint,
+          query,
+          new PrintStream(printed, true),
+          out -> {
+            runs++;
+            out.print(output);
+          });
+      return printed.toString();
+    }
+
+    @Test
+    public void TY_cache_miss_then_hit() throws IOException {
+      ResultCache cache = new ResultCache(folder, 1 << 10);
+      assertEquals("first", print(cache, "abc", "CHECK_SYMMETRY-1", "first"));
+      assertEquals(1, runs);
+      assertTrue(Files.exists(folder.resolve(ResultCache.name("abc", "CHECK_SYMMETRY-1"))));
+
+      // the same query on the same graph prints the cached output without running again:
+      assertEquals("first", print(cache, "abc", "CHECK_SYMMETRY-1", "second"));
+      assertEquals(1, runs);
+
+      // another graph or another query misses:
+      assertEquals("third", print(cache, "def", "CHECK_SYMMETRY-1", "third"));
+      assertEquals("fourth", print(cache, "abc", "CHECK_SYMMETRY-2", "fourth"));
+      assertEquals(3, runs);
+
+      // and a new cache over the same folder, as a later process would open, still hits:
+      ResultCache reopened = new ResultCache(folder, 1 << 10);
+      assertEquals("first", print(reopened, "abc", "CHECK_SYMMETRY-1", ""));
+      assertEquals(3, runs);
+    }
+
+    @Test
+    public void TY_cache_misses_older_format() throws IOException {
+      // an output cached before the format version was in file names, or by an older version:
+      Files.writeString(folder.resolve("abc-A.out"), "stale");
+      Files.writeString(
+          folder.resolve("v" + (ResultCache.FORMAT_VERSION - 1) + "-abc-A.out"), "stale");
+      ResultCache cache = new ResultCache(folder, 1 << 10);
+      assertEquals("fresh", print(cache, "abc", "A", "fresh"));
+      assertEquals(1, runs);
+      assertEquals("fresh", Files.readString(folder.resolve(ResultCache.name("abc", "A"))));
+    }
+
+    @Test
+    public void TY_cache_evicts_least_recently_used() throws IOException {
+      ResultCache cache = new ResultCache(folder, 10);
+      print(cache, "abc", "A", "aaaa");
+      print(cache, "abc", "B", "bbbb");
+
+      // age both outputs, then read the older one so that the other is least recently used:
+      Files.setLastModifiedTime(
+          folder.resolve(ResultCache.name("abc", "A")), FileTime.fromMillis(1000));
+      Files.setLastModifiedTime(
+          folder.resolve(ResultCache.name("abc", "B")), FileTime.fromMillis(2000));
+      assertEquals("aaaa", print(cache, "abc", "A", ""));
+      assertEquals(2, runs);
+
+      print(cache, "abc", "C", "cccc");
+      assertTrue(Files.exists(folder.resolve(ResultCache.name("abc", "A"))));
+      assertFalse(Files.exists(folder.resolve(ResultCache.name("abc", "B"))));
+      assertTrue(Files.exists(folder.resolve(ResultCache.name("abc", "C"))));
+      assertEquals("bbbb", print(cache, "abc", "B", "bbbb"));
+      assertEquals(4, runs);
+    }
+
+    @Test
+    public void TY_cache_skips_output_larger_than_limit() throws IOException {
+      ResultCache cache = new ResultCache(folder, 4);
+      assertEquals("too long", print(cache, "abc", "A", "too long"));
+      assertEquals("too long", print(cache, "abc", "A", "too long"));
+      assertEquals(2, runs);
+
+      try (Stream<Path> files = Files.list(folder)) {
+        assertEquals(0, files.count());
+      }
+    }
   }
 }